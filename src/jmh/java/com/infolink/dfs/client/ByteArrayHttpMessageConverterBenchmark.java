@@ -0,0 +1,69 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+/**
+ * Read and write throughput of the client's ByteArrayHttpMessageConverter. Writes go
+ * to a discarding stream so only the converter itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ByteArrayHttpMessageConverterBenchmark {
+    @Param({"65536", "8388608"})
+    private int payloadSize;
+
+    private final ByteArrayHttpMessageConverter converter = new ByteArrayHttpMessageConverter();
+    private final HttpOutputMessage discard = new HttpOutputMessage() {
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    };
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        return converter.read(byte[].class, new MockHttpInputMessage(payload));
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        converter.write(payload, MediaType.APPLICATION_OCTET_STREAM, discard);
+    }
+}
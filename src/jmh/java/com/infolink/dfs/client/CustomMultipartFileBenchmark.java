@@ -0,0 +1,73 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading a file through CustomMultipartFile.getBytes versus streaming it with
+ * getInputStream. Run with "-prof gc" to compare the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomMultipartFileBenchmark {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Param({"1048576", "67108864"})
+    private int fileSize;
+
+    private Path file;
+    private CustomMultipartFile multipartFile;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        file = Files.createTempFile("multipart-bench", ".bin");
+        Files.write(file, content);
+        multipartFile = new CustomMultipartFile(file.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] getBytes() throws IOException {
+        return multipartFile.getBytes();
+    }
+
+    @Benchmark
+    public long streamInputStream() throws IOException {
+        long total = 0;
+        try (InputStream in = multipartFile.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,77 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infolink.dfs.shared.DfsFile;
+
+/**
+ * Jackson cost of directory listings: serializing a listing, binding it to a DfsFile[]
+ * the way the client used to, and reading it element by element with DfsFileJsonIterator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DfsFileSerializationBenchmark {
+    @Param({"1000", "100000"})
+    private int listingSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private List<DfsFile> listing;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        listing = new ArrayList<>(listingSize);
+        for (int i = 0; i < listingSize; i++) {
+            DfsFile file = new DfsFile(String.format("%064x", i), "bench", "file-" + i + ".dat",
+                    "/bench/file-" + i + ".dat", 1024L * i, false, null, List.of(String.format("%064x", i)));
+            file.setCreateTime(new Date());
+            file.setLastModifiedTime(new Date());
+            listing.add(file);
+        }
+        json = mapper.writeValueAsBytes(listing);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(listing);
+    }
+
+    @Benchmark
+    public DfsFile[] deserializeArray() throws IOException {
+        return mapper.readValue(json, DfsFile[].class);
+    }
+
+    @Benchmark
+    public long deserializeStreaming() throws IOException {
+        long totalSize = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(json)) {
+            DfsFileJsonIterator files = new DfsFileJsonIterator(parser, mapper);
+            while (files.hasNext()) {
+                totalSize += files.next().getSize();
+            }
+        }
+        return totalSize;
+    }
+}
@@ -0,0 +1,96 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end upload and download through FileClientService against the in-process
+ * StubDfsServer, so the numbers include the RestTemplate, HttpClient pool and file I/O
+ * but no real network. Dedup and the journal are off so every invocation transfers
+ * the whole file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileTransferBenchmark {
+    private static final String FILE_NAME = "bench.bin";
+
+    @Param({"1048576", "33554432"})
+    private int fileSize;
+
+    private StubDfsServer stub;
+    private ConfigurableApplicationContext context;
+    private FileClientService fileClientService;
+    private Path workDir;
+    private Path sourceFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("transfer-bench");
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        sourceFile = Files.write(workDir.resolve(FILE_NAME), content);
+
+        stub = new StubDfsServer();
+        stub.putFile(FILE_NAME, content);
+        context = new SpringApplicationBuilder(DfsclientApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--metanode.url=" + stub.getUrl(),
+                        "--download.dir=" + workDir.resolve("downloads"),
+                        "--journal.enabled=false",
+                        "--upload.dedup.enabled=false",
+                        "--listing.cache.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.web=WARN",
+                        "--logging.level.com.infolink.dfs.client=WARN");
+        fileClientService = context.getBean(FileClientService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        stub.close();
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String upload() {
+        return fileClientService.uploadFileSystemResourceToServer("bench", sourceFile.toFile(), "/bench");
+    }
+
+    @Benchmark
+    public long download() {
+        return fileClientService.downloadFileFromServer(FILE_NAME);
+    }
+
+    @Benchmark
+    public long downloadInParallel() {
+        return fileClientService.downloadFileInParallel(FILE_NAME, null, TransferProgressListener.NONE);
+    }
+}
@@ -1,16 +1,98 @@
 package com.infolink.dfs.client;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.FormHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class AppConfig {
 
+	@Value("${http.client.max-total:200}")
+	private int maxTotal;
+	@Value("${http.client.max-per-route:50}")
+	private int maxPerRoute;
+	@Value("${http.client.connect-timeout:5s}")
+	private Duration connectTimeout;
+	@Value("${http.client.read-timeout:60s}")
+	private Duration readTimeout;
+	@Value("${http.client.keep-alive:30s}")
+	private Duration keepAlive; // Used when the server does not send a Keep-Alive header
+	@Value("${http.client.idle-eviction:30s}")
+	private Duration idleEviction;
+	@Value("${compression.download.enabled:true}")
+	private boolean downloadCompression; // Send Accept-Encoding and decode gzip/deflate responses
+
+	/**
+	 * Shared pooled client for every metanode and data-node call, so connections are
+	 * reused across requests instead of being opened per call.
+	 */
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient httpClient() {
+	    PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+	            .setMaxConnTotal(maxTotal)
+	            .setMaxConnPerRoute(maxPerRoute)
+	            .setDefaultConnectionConfig(ConnectionConfig.custom()
+	                    .setConnectTimeout(Timeout.of(connectTimeout))
+	                    .setSocketTimeout(Timeout.of(readTimeout))
+	                    .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+	                    .build())
+	            .build();
+
+	    RequestConfig requestConfig = RequestConfig.custom()
+	            .setResponseTimeout(Timeout.of(readTimeout))
+	            .setConnectionKeepAlive(TimeValue.of(keepAlive))
+	            .build();
+
+	    HttpClientBuilder builder = HttpClients.custom()
+	            .setConnectionManager(connectionManager)
+	            .setDefaultRequestConfig(requestConfig)
+	            .evictExpiredConnections()
+	            .evictIdleConnections(TimeValue.of(idleEviction))
+	            .setRetryStrategy(new DefaultHttpRequestRetryStrategy() {
+	                @Override
+	                public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+	                    return false; // 429/503 are retried by MetadataCalls, with backoff and jitter
+	                }
+	            });
+	    if (!downloadCompression) {
+	        builder.disableContentCompression();
+	    }
+	    return builder.build();
+	}
+
 	@Bean
-	public RestTemplate restTemplate() {
-	    RestTemplate restTemplate = new RestTemplate();
+	public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+	    RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
 	    restTemplate.getMessageConverters().add(new ByteArrayHttpMessageConverter());
+	    // Compressed file parts must be matched before the plain Resource converter
+	    for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+	        if (converter instanceof FormHttpMessageConverter) {
+	            FormHttpMessageConverter formConverter = (FormHttpMessageConverter) converter;
+	            List<HttpMessageConverter<?>> partConverters = new ArrayList<>(formConverter.getPartConverters());
+	            partConverters.add(0, new CompressedResourceHttpMessageConverter());
+	            formConverter.setPartConverters(partConverters);
+	        }
+	    }
 	    return restTemplate;
 	}
 }
@@ -0,0 +1,333 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Local on-disk cache of downloaded content, keyed by content hash: whole files by
+ * DfsFile.hash and blocks by their entry in DfsFile.blockHashes. Each entry is one file
+ * named after its hash under cache.block.dir. The least recently used entries are
+ * deleted once the cache holds more than max-size bytes; recency is rebuilt from the
+ * file modification times at startup.
+ * <p>
+ * Entries are copied into the download with FileChannel.transferFrom, which the JDK
+ * serves from a mapping of the cache file. With verify on (the default) the entry is
+ * mapped instead, hashed, and written from the same mapping; an entry that no longer
+ * matches its hash is dropped and counted as a miss.
+ */
+@Component
+public class BlockCache implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(BlockCache.class);
+    private static final Pattern HASH_NAME = Pattern.compile("[0-9A-Za-z]{8,128}"); // Hashes double as file names
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    @Value("${cache.block.enabled:false}")
+    private boolean enabled;
+    @Value("${cache.block.dir:${user.home}/.dfsclient/blocks}")
+    private String cacheDir;
+    @Value("${cache.block.max-size:10GB}")
+    private DataSize maxSize;
+    @Value("${cache.block.verify:true}")
+    private boolean verify;
+    @Autowired
+    private ContentHasher contentHasher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong corrupt = new AtomicLong();
+    private final AtomicLong hitBytes = new AtomicLong();
+
+    // Access-ordered hash -> size, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private Path root;
+
+    @PostConstruct
+    public void postConstruct() {
+    	if (!enabled) {
+    		return;
+    	}
+    	this.root = Paths.get(cacheDir);
+    	try {
+    		Files.createDirectories(root);
+    		load();
+    	} catch (IOException e) {
+    		// Downloads still work, they just always go to the network
+    		logger.warn("Block cache disabled, cannot use {}: {}", root, e.getMessage());
+    		this.enabled = false;
+    	}
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(root)) {
+            for (Path file : dir) {
+                if (HASH_NAME.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                } else {
+                    Files.deleteIfExists(file); // Temporary file of an interrupted put
+                }
+            }
+        }
+        files.sort(Comparator.comparing(BlockCache::lastModified));
+        synchronized (this) {
+            for (Path file : files) {
+                long size = Files.size(file);
+                entries.put(file.getFileName().toString(), size);
+                totalBytes += size;
+            }
+            evict();
+        }
+        logger.info("Block cache {} holds {} entries, {} bytes", root, entries.size(), totalBytes);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class).lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes the cached content with this hash into out at position.
+     *
+     * @param length expected length of the content; an entry of another size is a miss
+     * @return true on a hit; false when the content must be fetched
+     */
+    public boolean read(String hash, long length, FileChannel out, long position) {
+        if (!enabled || hash == null || !HASH_NAME.matcher(hash).matches()) {
+            return false;
+        }
+        synchronized (this) {
+            Long size = entries.get(hash); // Also marks the entry as recently used
+            if (size == null || size != length) {
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        Path file = root.resolve(hash);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean valid = verify ? copyVerified(hash, in, length, out, position) : copy(in, length, out, position);
+            if (!valid) {
+                corrupt.incrementAndGet();
+                logger.warn("Cached entry {} failed verification, dropping it", hash);
+                remove(hash);
+                misses.incrementAndGet();
+                return false;
+            }
+        } catch (IOException e) {
+            // Evicted or damaged in between; the caller fetches it instead
+            logger.debug("Cached entry {} unreadable: {}", hash, e.getMessage());
+            remove(hash);
+            misses.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        hitBytes.addAndGet(length);
+        return true;
+    }
+
+    /**
+     * Writes the cached whole file with this hash to target, replacing it.
+     *
+     * @return true on a hit; false when target was left untouched
+     */
+    public boolean readFile(String hash, long length, Path target) {
+        if (!enabled || hash == null || length <= 0) {
+            return false;
+        }
+        synchronized (this) {
+            if (!entries.containsKey(hash)) { // Spares the temporary file on a plain miss
+                misses.incrementAndGet();
+                return false;
+            }
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".cached");
+        try {
+            boolean hit;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                hit = read(hash, length, out, 0);
+            }
+            if (hit) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            }
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            logger.warn("Could not copy cached {} to {}: {}", hash, target, e.getMessage());
+        }
+        return false;
+    }
+
+    private boolean copy(FileChannel in, long length, FileChannel out, long position) throws IOException {
+        long copied = 0;
+        while (copied < length) {
+            long n = out.transferFrom(in.position(copied), position + copied, length - copied);
+            if (n <= 0) {
+                return false; // Truncated behind our back
+            }
+            copied += n;
+        }
+        return true;
+    }
+
+    private boolean copyVerified(String hash, FileChannel in, long length, FileChannel out, long position) throws IOException {
+        if (in.size() != length) {
+            return false;
+        }
+        ContentHasher.Digest digest = contentHasher.newDigest();
+        List<MappedByteBuffer> windows = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += MAP_WINDOW) {
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, length - offset));
+            digest.update(window.duplicate());
+            windows.add(window);
+        }
+        if (!hash.equals(digest.finish())) {
+            return false;
+        }
+        // Written only once the whole entry checked out, so a bad entry leaves no partial data
+        long at = position;
+        for (MappedByteBuffer window : windows) {
+            while (window.hasRemaining()) {
+                at += out.write(window, at);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores length bytes of source, starting at position, under the hash. The caller
+     * must already have verified that the range has this hash.
+     */
+    public void put(String hash, FileChannel source, long position, long length) {
+        if (!enabled || hash == null || !HASH_NAME.matcher(hash).matches() || length > maxSize.toBytes()) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(hash)) {
+                return;
+            }
+        }
+        Path tmp = root.resolve(hash + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long copied = 0;
+                while (copied < length) {
+                    long n = source.transferTo(position + copied, length - copied, out);
+                    if (n <= 0) {
+                        throw new IOException("Source ended after " + copied + " of " + length + " bytes");
+                    }
+                    copied += n;
+                }
+            }
+            Files.move(tmp, root.resolve(hash), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not cache {}: {}", hash, e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // Swept at the next startup
+            }
+            return;
+        }
+        synchronized (this) {
+            Long previous = entries.put(hash, length);
+            totalBytes += length - (previous != null ? previous : 0);
+            evict();
+        }
+    }
+
+    public void put(String hash, Path source) {
+        if (!enabled) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            put(hash, in, 0, in.size());
+        } catch (IOException e) {
+            logger.warn("Could not cache {}: {}", source, e.getMessage());
+        }
+    }
+
+    private synchronized void evict() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxSize.toBytes() && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            totalBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            delete(eldest.getKey());
+        }
+    }
+
+    private synchronized void remove(String hash) {
+        Long size = entries.remove(hash);
+        if (size != null) {
+            totalBytes -= size;
+            delete(hash);
+        }
+    }
+
+    private void delete(String hash) {
+        try {
+            Files.deleteIfExists(root.resolve(hash));
+        } catch (IOException e) {
+            // E.g. still mapped by a reader on Windows; swept at the next startup if over the limit
+            logger.debug("Could not delete cached entry {}: {}", hash, e.getMessage());
+        }
+    }
+
+    public synchronized int size() 		{        return entries.size();    }
+    public synchronized long getBytes() 	{        return totalBytes;    }
+    public long getHits() 					{        return hits.get();    }
+    public long getMisses() 				{        return misses.get();    }
+    public long getEvictions() 				{        return evictions.get();    }
+    public long getCorrupt() 				{        return corrupt.get();    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("dfs.client.block.cache.size", this, BlockCache::size).register(registry);
+        Gauge.builder("dfs.client.block.cache.bytes", this, BlockCache::getBytes).baseUnit("bytes").register(registry);
+        FunctionCounter.builder("dfs.client.block.cache.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("dfs.client.block.cache.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        FunctionCounter.builder("dfs.client.block.cache.hit.bytes", hitBytes, AtomicLong::get).baseUnit("bytes").register(registry);
+        FunctionCounter.builder("dfs.client.block.cache.evictions", evictions, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dfs.client.block.cache.corrupt", corrupt, AtomicLong::get).register(registry);
+    }
+}
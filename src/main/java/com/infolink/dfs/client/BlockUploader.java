@@ -0,0 +1,225 @@
+package com.infolink.dfs.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.infolink.dfs.shared.DfsFile;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Uploads a file as fixed-size blocks. The file is read once to compute the block
+ * hashes and the whole-file hash, unless the caller already did so with hashBlocks
+ * while hashing for dedup, then the blocks are posted to the data node in parallel.
+ * A failed block is retried on its own instead of restarting the file.
+ */
+@Component
+public class BlockUploader {
+    private static final Logger logger = LoggerFactory.getLogger(BlockUploader.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${upload.block.size:8MB}")
+    private DataSize blockSize;
+    @Value("${upload.block.threads:4}")
+    private int blockThreads;
+    @Value("${upload.block.max-attempts:3}")
+    private int maxAttempts; // Attempts per block before the file upload fails
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    private ContentHasher contentHasher;
+    @Autowired
+    private TransferJournal transferJournal;
+    @Autowired
+    private TransferMetrics transferMetrics;
+    private ExecutorService blockExecutor;
+
+    @PostConstruct
+    public void postConstruct() {
+    	this.blockExecutor = Executors.newFixedThreadPool(blockThreads, new CustomizableThreadFactory("dfs-block-"));
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	blockExecutor.shutdownNow();
+    }
+
+    public long getBlockSize() {
+        return blockSize.toBytes();
+    }
+
+    /**
+     * Splits the file into blocks, uploads them to {@code nodeUrl + "/block"} and returns
+     * the file metadata with its content hash and the ordered block hashes filled in.
+     * Blocks the journal records as already sent to the same node are not sent again.
+     */
+    public DfsFile upload(String nodeUrl, String username, File file, String targetDfsDir) throws IOException {
+        return upload(nodeUrl, username, file, targetDfsDir, null);
+    }
+
+    /**
+     * @param known hashes of the file from hashBlocks, or null to compute them here
+     */
+    public DfsFile upload(String nodeUrl, String username, File file, String targetDfsDir, BlockHashes known) throws IOException {
+        Path path = file.toPath();
+        long size = file.length();
+        long blockBytes = blockSize.toBytes();
+        // Hashes of a file that has since changed size are taken again
+        BlockHashes hashes = known != null && known.covers(size, blockBytes) ? known : hashBlocks(path, blockBytes);
+        logger.debug("Uploading {} in {} blocks of {} bytes", file.getName(), hashes.blockHashes.size(), blockBytes);
+
+        String blockUrl = nodeUrl + "/block";
+        String journalKey = "UB|" + hashes.fileHash + "|" + blockBytes + "|" + blockUrl;
+        Set<Integer> completed = transferJournal.getCompletedBlocks(journalKey);
+        if (!completed.isEmpty()) {
+            logger.info("Resuming block upload of {}: {} of {} blocks already sent", file.getName(), completed.size(), hashes.blockHashes.size());
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(hashes.blockHashes.size());
+        for (int i = 0; i < hashes.blockHashes.size(); i++) {
+            if (completed.contains(i)) {
+                continue;
+            }
+            int index = i;
+            long offset = index * blockBytes;
+            long length = Math.min(blockBytes, size - offset);
+            futures.add(CompletableFuture.runAsync(() -> {
+                uploadBlock(blockUrl, username, path, index, offset, length, hashes.blockHashes.get(index), hashes.fileHash);
+                transferJournal.markBlockCompleted(journalKey, index);
+            }, blockExecutor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Block upload failed for " + file.getName() + ": " + cause.getMessage(), cause);
+        }
+        transferJournal.reset(journalKey); // All blocks are on the node, the checkpoints are no longer needed
+
+        return new DfsFile(hashes.fileHash, username, file.getName(), dfsPath(targetDfsDir, file.getName()),
+                size, false, null, hashes.blockHashes);
+    }
+
+    private void uploadBlock(String blockUrl, String username, Path path, int index, long offset, long length,
+                             String blockHash, String fileHash) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("block", new TransferUtils.SourceResource(new FileRegionResource(path, offset, length, blockHash)));
+        body.add("hash", blockHash);
+        body.add("index", String.valueOf(index));
+        body.add("fileHash", fileHash);
+        body.add("user", username);
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transferMetrics.record("upload-block", blockUrl,
+                        () -> restTemplate.exchange(blockUrl, HttpMethod.POST, requestEntity, String.class));
+                transferMetrics.recordBytes("upload", blockUrl, length);
+                return;
+            } catch (RestClientException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                logger.warn("Block {} of {} failed (attempt {}/{}): {}", index, path.getFileName(), attempt, maxAttempts, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hashes the file and its blocks of upload.block.size in one read.
+     */
+    BlockHashes hashBlocks(Path path) throws IOException {
+        return hashBlocks(path, blockSize.toBytes());
+    }
+
+    /**
+     * Reads the file once, feeding both the whole-file digest and the digest of the
+     * block the bytes fall into.
+     */
+    BlockHashes hashBlocks(Path path, long blockBytes) throws IOException {
+        ContentHasher.Digest fileDigest = contentHasher.newDigest();
+        ContentHasher.Digest blockDigest = contentHasher.newDigest();
+        List<String> blockHashes = new ArrayList<>();
+        long inBlock = 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                byte[] bytes = buffer.array();
+                int pos = 0;
+                int limit = buffer.position();
+                fileDigest.update(bytes, 0, limit);
+                while (pos < limit) {
+                    int n = (int) Math.min(limit - pos, blockBytes - inBlock);
+                    blockDigest.update(bytes, pos, n);
+                    pos += n;
+                    inBlock += n;
+                    if (inBlock == blockBytes) {
+                        blockHashes.add(blockDigest.finish());
+                        blockDigest = contentHasher.newDigest();
+                        inBlock = 0;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        if (inBlock > 0 || blockHashes.isEmpty()) {
+            blockHashes.add(blockDigest.finish());
+        }
+        return new BlockHashes(fileDigest.finish(), blockHashes);
+    }
+
+    static String dfsPath(String targetDfsDir, String name) {
+        return targetDfsDir.endsWith("/") ? targetDfsDir + name : targetDfsDir + "/" + name;
+    }
+
+    /**
+     * Whole-file hash and ordered block hashes; the block hashes are null for files
+     * that were hashed as a whole only.
+     */
+    static class BlockHashes {
+        final String fileHash;
+        final List<String> blockHashes;
+
+        BlockHashes(String fileHash, List<String> blockHashes) {
+            this.fileHash = fileHash;
+            this.blockHashes = blockHashes;
+        }
+
+        boolean covers(long size, long blockBytes) {
+            return blockHashes != null && blockHashes.size() == Math.max(1, (size + blockBytes - 1) / blockBytes);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Marks a multipart file part to be compressed with the given codec while the request
+ * body is written. The bytes are produced by CompressedResourceHttpMessageConverter,
+ * which streams the delegate through the codec, so the compressed form is never
+ * materialized in memory or on disk.
+ */
+class CompressedResource extends AbstractResource {
+    private final Resource delegate;
+    private final CompressionPolicy.Codec codec;
+    private volatile long encodedLength = -1; // Set once the part has been written
+
+    CompressedResource(Resource delegate, CompressionPolicy.Codec codec) {
+        this.delegate = delegate;
+        this.codec = codec;
+    }
+
+    Resource getDelegate() {
+        return delegate;
+    }
+
+    CompressionPolicy.Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return bytes of the compressed part as sent, or -1 until it has been written
+     */
+    long getEncodedLength() {
+        return encodedLength;
+    }
+
+    void setEncodedLength(long encodedLength) {
+        this.encodedLength = encodedLength;
+    }
+
+    @Override
+    public String getFilename() {
+        return delegate.getFilename();
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // Not known until the body has been compressed
+    }
+
+    @Override
+    public String getDescription() {
+        return codec.getEncoding() + " compressed " + delegate.getDescription();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        throw new IOException(getDescription() + " can only be written by CompressedResourceHttpMessageConverter");
+    }
+}
@@ -0,0 +1,77 @@
+package com.infolink.dfs.client;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.util.StreamUtils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Multipart part converter that writes a CompressedResource by streaming its delegate
+ * through the codec, and labels the part with a Content-Encoding header. The number of
+ * compressed bytes written is recorded on the resource.
+ */
+class CompressedResourceHttpMessageConverter implements HttpMessageConverter<CompressedResource> {
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return CompressedResource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes() {
+        return Collections.singletonList(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    @Override
+    public CompressedResource read(Class<? extends CompressedResource> clazz, HttpInputMessage inputMessage) {
+        throw new UnsupportedOperationException("Compressed resources are write-only");
+    }
+
+    @Override
+    public void write(CompressedResource resource, MediaType contentType, HttpOutputMessage outputMessage)
+            throws IOException {
+        HttpHeaders headers = outputMessage.getHeaders();
+        headers.setContentType(contentType != null && !contentType.isWildcardType() ? contentType : MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.CONTENT_ENCODING, resource.getCodec().getEncoding());
+        // Closing the codec stream finishes the frame but must leave the multipart body open
+        CountingOutputStream body = new CountingOutputStream(StreamUtils.nonClosing(outputMessage.getBody()));
+        try (InputStream in = resource.getDelegate().getInputStream();
+             OutputStream out = resource.getCodec().wrap(body)) {
+            in.transferTo(out);
+        }
+        resource.setEncodedLength(body.count);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * Decides per file whether an upload is compressed on the fly, and with which codec.
+ * <p>
+ * Content types that are known to compress well (text, JSON, XML, CSV) are always
+ * compressed and known compressed formats (images, video, archives) never are. For
+ * anything else the first sample-size bytes are compressed and the file is only sent
+ * compressed when the sample shrinks below max-ratio.
+ * <p>
+ * A node has to accept the codec. Following RFC 7694 the data nodes advertise the
+ * request codings they accept with an Accept-Encoding response header, which is
+ * remembered per node; a 415 response marks the node as not accepting compressed
+ * uploads. Until a node has said anything, uploads to it are only compressed when
+ * assume-supported is set.
+ */
+@Component
+public class CompressionPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(CompressionPolicy.class);
+
+    private static final List<String> COMPRESSIBLE_TYPES = List.of(
+            "text/", "application/json", "application/xml", "application/javascript", "application/x-ndjson",
+            "application/csv", "application/x-yaml", "application/yaml", "application/sql", "+json", "+xml");
+    private static final List<String> INCOMPRESSIBLE_TYPES = List.of(
+            "image/", "video/", "audio/", "application/zip", "application/gzip", "application/x-gzip",
+            "application/x-bzip2", "application/x-xz", "application/x-7z-compressed", "application/vnd.rar",
+            "application/x-rar-compressed", "application/zstd", "application/x-lz4", "application/pdf");
+
+    public enum Codec {
+        GZIP("gzip"), LZ4("lz4");
+
+        private final String encoding;
+
+        Codec(String encoding) {
+            this.encoding = encoding;
+        }
+
+        /** Content-Encoding token of the codec. */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        /** Wraps out in a compressing stream; closing it finishes the frame and closes out. */
+        public OutputStream wrap(OutputStream out) throws IOException {
+            switch (this) {
+                case LZ4:
+                    return new LZ4FrameOutputStream(out);
+                case GZIP:
+                default:
+                    return new GZIPOutputStream(out, 64 * 1024);
+            }
+        }
+    }
+
+    @Value("${compression.enabled:false}")
+    private boolean enabled;
+    @Value("${compression.codec:gzip}")
+    private String codecName;
+    @Value("${compression.min-size:64KB}")
+    private DataSize minSize; // Smaller files are not worth the framing overhead
+    @Value("${compression.sample-size:64KB}")
+    private DataSize sampleSize;
+    @Value("${compression.max-ratio:0.8}")
+    private double maxRatio; // Compressed/raw size a sample must reach to compress the file
+    @Value("${compression.assume-supported:false}")
+    private boolean assumeSupported;
+
+    private final Map<String, Boolean> nodeSupport = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    Codec getCodec() {
+        return Codec.valueOf(codecName.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * @param content the file, read for the sample when the content type is not conclusive
+     * @param contentType content type of the file, or null when unknown
+     * @return the codec to upload the file with, or null to send it as is
+     */
+    public Codec choose(String uploadUrl, InputStreamSource content, String contentType, long size) {
+        if (!enabled || size < minSize.toBytes()) {
+            return null;
+        }
+        Codec codec = getCodec();
+        Boolean supported = nodeSupport.get(TransferMetrics.node(uploadUrl));
+        if (supported == null ? !assumeSupported : !supported) {
+            return null;
+        }
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (matches(type, INCOMPRESSIBLE_TYPES)) {
+            return null;
+        }
+        if (matches(type, COMPRESSIBLE_TYPES)) {
+            return codec;
+        }
+        try {
+            double ratio = sampleRatio(content, codec);
+            logger.debug("Compression sample of {}: ratio {}", content, ratio);
+            return ratio <= maxRatio ? codec : null;
+        } catch (IOException e) {
+            logger.warn("Could not sample {} for compression: {}", content, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Learns which request codings a node accepts from its Accept-Encoding response header.
+     */
+    public void learn(String uploadUrl, HttpHeaders responseHeaders) {
+        List<String> accepted = responseHeaders.get(HttpHeaders.ACCEPT_ENCODING);
+        if (accepted == null) {
+            return;
+        }
+        String encoding = getCodec().getEncoding();
+        boolean supported = accepted.stream()
+                .flatMap(value -> List.of(value.split(",")).stream())
+                .map(token -> token.split(";")[0].trim().toLowerCase(Locale.ROOT))
+                .anyMatch(token -> token.equals(encoding) || token.equals("*"));
+        nodeSupport.put(TransferMetrics.node(uploadUrl), supported);
+    }
+
+    /**
+     * Records that the node rejected a compressed upload.
+     */
+    public void markUnsupported(String uploadUrl) {
+        logger.info("Node {} does not accept compressed uploads, sending uncompressed", TransferMetrics.node(uploadUrl));
+        nodeSupport.put(TransferMetrics.node(uploadUrl), false);
+    }
+
+    private static boolean matches(String type, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (pattern.startsWith("+") ? type.endsWith(pattern) : type.startsWith(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double sampleRatio(InputStreamSource content, Codec codec) throws IOException {
+        byte[] sample;
+        try (InputStream in = content.getInputStream()) {
+            sample = in.readNBytes((int) sampleSize.toBytes());
+        }
+        if (sample.length == 0) {
+            return 1.0;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        try (OutputStream out = codec.wrap(counter)) {
+            out.write(sample);
+        }
+        return (double) counter.count / sample.length;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
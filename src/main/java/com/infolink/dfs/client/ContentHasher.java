@@ -0,0 +1,101 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * Computes content hashes for deduplication. The algorithm is either any
+ * MessageDigest name (SHA-256 by default) or XXH64, a much faster non-cryptographic
+ * hash for trusted datasets where collision resistance against attackers is not needed.
+ */
+@Component
+public class ContentHasher {
+    public static final String XXH64 = "XXH64";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String algorithm;
+
+    public ContentHasher(@Value("${upload.hash.algorithm:SHA-256}") String algorithm) {
+        this.algorithm = algorithm;
+        newDigest(); // Fail at startup on an unknown algorithm
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Incremental digest, fed while the content is being read.
+     */
+    public interface Digest {
+        void update(byte[] bytes, int offset, int length);
+        String finish();
+
+        /**
+         * Feeds the remaining bytes of the buffer, e.g. a mapped file region.
+         */
+        default void update(ByteBuffer buffer) {
+            byte[] chunk = new byte[(int) Math.min(BUFFER_SIZE, buffer.remaining())];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                update(chunk, 0, n);
+            }
+        }
+    }
+
+    public Digest newDigest() {
+        if (XXH64.equalsIgnoreCase(algorithm)) {
+            StreamingXXHash64 hash = XXHashFactory.fastestInstance().newStreamingHash64(0);
+            return new Digest() {
+                public void update(byte[] bytes, int offset, int length) { hash.update(bytes, offset, length); }
+                public String finish() { return String.format("%016x", hash.getValue()); }
+            };
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            return new Digest() {
+                public void update(byte[] bytes, int offset, int length) { digest.update(bytes, offset, length); }
+                public void update(ByteBuffer buffer) { digest.update(buffer); }
+                public String finish() { return HexFormat.of().formatHex(digest.digest()); }
+            };
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported hash algorithm: " + algorithm, e);
+        }
+    }
+
+    public String hash(Path path) throws IOException {
+        Digest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                digest.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+        return digest.finish();
+    }
+
+    public String hash(InputStream in) throws IOException {
+        Digest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+        return digest.finish();
+    }
+}
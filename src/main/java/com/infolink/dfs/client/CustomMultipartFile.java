@@ -3,10 +3,11 @@ package com.infolink.dfs.client;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 
 public class CustomMultipartFile implements MultipartFile {
     private final File file;
@@ -51,12 +52,20 @@ public class CustomMultipartFile implements MultipartFile {
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return new FileInputStream(file);
+        return Files.newInputStream(file.toPath());
     }
 
     @Override
     public void transferTo(File dest) throws IOException, IllegalStateException {
-        Files.copy(file.toPath(), dest.toPath());
+        // FileChannel.transferTo lets the OS copy the data without passing it through the heap
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
     }
     
     public File getFile() {
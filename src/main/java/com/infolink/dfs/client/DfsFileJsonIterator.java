@@ -0,0 +1,49 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infolink.dfs.shared.DfsFile;
+
+/**
+ * Reads a JSON array of DfsFile objects one element at a time, so only the current
+ * element is held in memory no matter how long the array is.
+ */
+class DfsFileJsonIterator implements Iterator<DfsFile> {
+    private final JsonParser parser;
+    private final ObjectMapper mapper;
+    private JsonToken next;
+
+    DfsFileJsonIterator(JsonParser parser, ObjectMapper mapper) throws IOException {
+        this.parser = parser;
+        this.mapper = mapper;
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a JSON array of files");
+        }
+        this.next = parser.nextToken();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next == JsonToken.START_OBJECT;
+    }
+
+    @Override
+    public DfsFile next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            DfsFile file = mapper.readValue(parser, DfsFile.class);
+            next = parser.nextToken();
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
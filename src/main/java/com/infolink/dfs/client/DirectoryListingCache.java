@@ -0,0 +1,161 @@
+package com.infolink.dfs.client;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.infolink.dfs.shared.DfsFile;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Client-side cache of metanode directory listings, keyed by directory and owner.
+ * Entries expire after a TTL and the least recently used entry is evicted once the
+ * cache holds max-entries listings. Listings larger than max-listing-size are not
+ * cached at all, which keeps the memory bound predictable. Pages of a listing are
+ * cached under the same directory with a variant such as "page=2,size=100".
+ */
+@Component
+public class DirectoryListingCache implements MeterBinder {
+    @Value("${listing.cache.enabled:true}")
+    private boolean enabled;
+    @Value("${listing.cache.ttl:30s}")
+    private Duration ttl;
+    @Value("${listing.cache.max-entries:1000}")
+    private int maxEntries;
+    @Value("${listing.cache.max-listing-size:10000}")
+    private int maxListingSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * @return the cached listing, or null when absent or expired
+     */
+    public List<DfsFile> get(String directory, String owner) {
+        return get(directory, owner, "");
+    }
+
+    public synchronized List<DfsFile> get(String directory, String owner, String variant) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = new Key(directory, owner, variant);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.files;
+    }
+
+    public void put(String directory, String owner, List<DfsFile> files) {
+        put(directory, owner, "", files);
+    }
+
+    public synchronized void put(String directory, String owner, String variant, List<DfsFile> files) {
+        if (!enabled || files.size() > maxListingSize) {
+            return;
+        }
+        entries.put(new Key(directory, owner, variant), new Entry(List.copyOf(files), System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    /**
+     * Drops the listings of a directory for every owner, e.g. after this client
+     * uploaded into it.
+     */
+    public synchronized void invalidate(String directory) {
+        Iterator<Key> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().directory.equals(directory)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized int size() 	{        return entries.size();    }
+    public long getHits() 				{        return hits.get();    }
+    public long getMisses() 			{        return misses.get();    }
+    public long getEvictions() 			{        return evictions.get();    }
+    public long getExpirations() 		{        return expirations.get();    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("dfs.client.listing.cache.size", this, DirectoryListingCache::size).register(registry);
+        FunctionCounter.builder("dfs.client.listing.cache.requests", hits, AtomicLong::get).tag("result", "hit").register(registry);
+        FunctionCounter.builder("dfs.client.listing.cache.requests", misses, AtomicLong::get).tag("result", "miss").register(registry);
+        FunctionCounter.builder("dfs.client.listing.cache.evictions", evictions, AtomicLong::get).register(registry);
+        FunctionCounter.builder("dfs.client.listing.cache.expirations", expirations, AtomicLong::get).register(registry);
+    }
+
+    private static final class Key {
+        private final String directory;
+        private final String owner;
+        private final String variant;
+
+        Key(String directory, String owner, String variant) {
+            this.directory = directory;
+            this.owner = owner;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return directory.equals(other.directory) && Objects.equals(owner, other.owner)
+                    && variant.equals(other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(directory, owner, variant);
+        }
+    }
+
+    private static final class Entry {
+        private final List<DfsFile> files;
+        private final long expiresAt;
+
+        Entry(List<DfsFile> files, long expiresAt) {
+            this.files = files;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
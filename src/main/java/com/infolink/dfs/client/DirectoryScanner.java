@@ -0,0 +1,328 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Walks a directory tree with NIO and hands every matching regular file, with the
+ * attributes read during the walk, to a consumer on the calling thread. The caller
+ * starts uploading while the walk is still going.
+ * <p>
+ * With scan.parallelism 1 the tree is walked by Files.walkFileTree on the calling
+ * thread, which needs no recursion and so no deep stack. With more, every directory
+ * is listed by its own ForkJoin task, which keeps several directory listings in flight
+ * on network filesystems; found files reach the consumer through a bounded queue, so
+ * a slow uploader holds the walk back instead of buffering the tree.
+ * <p>
+ * Filters: include and exclude globs (a pattern without '/' matches the file name,
+ * otherwise the path relative to the root; an excluded directory is not entered), a
+ * size range, and a symlink policy: skip, follow-files (links to files are uploaded,
+ * links to directories are not entered) or follow (loops are detected and skipped).
+ */
+@Component
+public class DirectoryScanner {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryScanner.class);
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    public enum SymlinkPolicy { SKIP, FOLLOW_FILES, FOLLOW }
+
+    @Value("${scan.parallelism:1}")
+    private int parallelism;
+    @Value("${scan.include:}")
+    private List<String> includes;
+    @Value("${scan.exclude:}")
+    private List<String> excludes;
+    @Value("${scan.min-size:0B}")
+    private DataSize minSize;
+    @Value("${scan.max-size:0B}")
+    private DataSize maxSize; // 0 for no limit
+    @Value("${scan.symlinks:skip}")
+    private String symlinks;
+
+    private SymlinkPolicy symlinkPolicy;
+    private ForkJoinPool scanPool;
+
+    @PostConstruct
+    public void postConstruct() {
+    	this.symlinkPolicy = SymlinkPolicy.valueOf(symlinks.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    	if (parallelism > 1) {
+    		AtomicInteger threads = new AtomicInteger();
+    		this.scanPool = new ForkJoinPool(parallelism, pool -> {
+    			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+    			thread.setName("dfs-scan-" + threads.incrementAndGet());
+    			return thread;
+    		}, null, false);
+    	}
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	if (scanPool != null) {
+    		scanPool.shutdownNow();
+    	}
+    }
+
+    /**
+     * Scans the tree under root and passes each matching file to the consumer, always on
+     * the calling thread. Returns when the walk is done or cancelled returns true.
+     */
+    public void scan(Path root, BiConsumer<Path, BasicFileAttributes> consumer, BooleanSupplier cancelled) throws IOException {
+        Filter filter = new Filter(root);
+        if (scanPool == null) {
+            Set<FileVisitOption> options = symlinkPolicy == SymlinkPolicy.FOLLOW
+                    ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+            Files.walkFileTree(root, options, Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (cancelled.getAsBoolean()) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    return dir.equals(root) || filter.entersDirectory(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    BasicFileAttributes target = filter.accept(file, attrs);
+                    if (target != null) {
+                        consumer.accept(file, target);
+                    }
+                    return cancelled.getAsBoolean() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.warn("Skipping {}: {}", file, e.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return;
+        }
+        scanInParallel(root, filter, consumer, cancelled);
+    }
+
+    private void scanInParallel(Path root, Filter filter, BiConsumer<Path, BasicFileAttributes> consumer,
+                                BooleanSupplier cancelled) throws IOException {
+        BlockingQueue<Found> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicBoolean stop = new AtomicBoolean();
+        Set<Object> visited = ConcurrentHashMap.newKeySet();
+        Object rootKey = Files.readAttributes(root, BasicFileAttributes.class).fileKey();
+        if (rootKey != null) {
+            visited.add(rootKey);
+        }
+        ForkJoinTask<Void> walk = scanPool.submit(new DirectoryTask(root, filter, queue, stop, visited));
+        try {
+            while (true) {
+                if (cancelled.getAsBoolean()) {
+                    break;
+                }
+                Found found = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (found != null) {
+                    consumer.accept(found.path, found.attrs);
+                } else if (walk.isDone() && queue.isEmpty()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + root, e);
+        } finally {
+            stop.set(true); // Unblocks producers waiting on a full queue
+        }
+        if (walk.isCompletedAbnormally() && !cancelled.getAsBoolean()) {
+            throw new IOException("Scan of " + root + " failed", walk.getException());
+        }
+    }
+
+    private static class Found {
+        final Path path;
+        final BasicFileAttributes attrs;
+
+        Found(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+    }
+
+    /**
+     * Lists one directory and forks a task per subdirectory.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path dir;
+        private final Filter filter;
+        private final BlockingQueue<Found> queue;
+        private final AtomicBoolean stop;
+        private final Set<Object> visited;
+
+        DirectoryTask(Path dir, Filter filter, BlockingQueue<Found> queue, AtomicBoolean stop, Set<Object> visited) {
+            this.dir = dir;
+            this.filter = filter;
+            this.queue = queue;
+            this.stop = stop;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            Set<FileVisitOption> options = symlinkPolicy == SymlinkPolicy.FOLLOW
+                    ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+            try {
+                // Depth 1 lists the directory and reports every entry, subdirectories included, to visitFile
+                Files.walkFileTree(dir, options, 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                        if (stop.get()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attrs.isDirectory()) {
+                            if (filter.entersDirectory(path) && firstVisit(attrs)) {
+                                subtasks.add(new DirectoryTask(path, filter, queue, stop, visited));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                        BasicFileAttributes target = filter.accept(path, attrs);
+                        if (target != null && !offer(new Found(path, target))) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path path, IOException e) {
+                        logger.warn("Skipping {}: {}", path, e.toString());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                logger.warn("Skipping directory {}: {}", dir, e.toString());
+            }
+            invokeAll(subtasks);
+        }
+
+        /**
+         * False for a directory reached again through a followed link loop.
+         */
+        private boolean firstVisit(BasicFileAttributes attrs) {
+            return symlinkPolicy != SymlinkPolicy.FOLLOW || attrs.fileKey() == null || visited.add(attrs.fileKey());
+        }
+
+        private boolean offer(Found found) {
+            try {
+                while (!stop.get()) {
+                    if (queue.offer(found, 50, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The configured filters, relative to one scan root.
+     */
+    private class Filter {
+        private final Path root;
+        private final List<PathMatcher> includeMatchers;
+        private final List<PathMatcher> excludeMatchers;
+        private final List<Boolean> includeByName;
+        private final List<Boolean> excludeByName;
+
+        Filter(Path root) {
+            this.root = root;
+            FileSystem fs = root.getFileSystem();
+            this.includeMatchers = matchers(fs, includes);
+            this.excludeMatchers = matchers(fs, excludes);
+            this.includeByName = byName(includes);
+            this.excludeByName = byName(excludes);
+        }
+
+        boolean entersDirectory(Path dir) {
+            return !matches(dir, excludeMatchers, excludeByName);
+        }
+
+        /**
+         * @return the attributes to report for the file (the link target's for a followed
+         *         symlink), or null when the file is filtered out
+         */
+        BasicFileAttributes accept(Path file, BasicFileAttributes attrs) {
+            if (attrs.isSymbolicLink()) {
+                if (symlinkPolicy != SymlinkPolicy.FOLLOW_FILES) {
+                    return null; // With FOLLOW the walk already resolved the link; a dangling one lands here
+                }
+                try {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    logger.debug("Skipping dangling link {}", file);
+                    return null;
+                }
+            }
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            long size = attrs.size();
+            if (size < minSize.toBytes() || (maxSize.toBytes() > 0 && size > maxSize.toBytes())) {
+                return null;
+            }
+            if (!includeMatchers.isEmpty() && !matches(file, includeMatchers, includeByName)) {
+                return null;
+            }
+            return matches(file, excludeMatchers, excludeByName) ? null : attrs;
+        }
+
+        private boolean matches(Path path, List<PathMatcher> matchers, List<Boolean> byName) {
+            Path relative = root.relativize(path);
+            for (int i = 0; i < matchers.size(); i++) {
+                if (matchers.get(i).matches(byName.get(i) ? path.getFileName() : relative)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private List<PathMatcher> matchers(FileSystem fs, List<String> patterns) {
+            return patterns.stream().map(String::trim).filter(p -> !p.isEmpty())
+                    .map(p -> fs.getPathMatcher("glob:" + p)).toList();
+        }
+
+        private List<Boolean> byName(List<String> patterns) {
+            return patterns.stream().map(String::trim).filter(p -> !p.isEmpty())
+                    .map(p -> !p.contains("/")).toList();
+        }
+    }
+}
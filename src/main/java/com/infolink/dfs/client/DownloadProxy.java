@@ -0,0 +1,257 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.infolink.dfs.shared.DfsFile;
+
+/**
+ * Relays a DFS file to an HTTP client without storing it. The request to the data
+ * node is opened while the controller method runs, so its status and headers become
+ * the response's; the body is then copied in fixed-size chunks on the MVC async
+ * thread by a StreamingResponseBody, so memory use does not depend on the file size.
+ * <p>
+ * Range and If-Range are passed through, which makes the proxy serve 206 and 416
+ * exactly as the node does. When the listing metadata is known its hash is the
+ * ETag, and an If-None-Match that matches it is answered with 304 without contacting
+ * any node; otherwise conditional headers are left to the node.
+ * <p>
+ * A file packed into a container is served from its byte range of the container. A
+ * single client range is mapped into that range and answered with a 206 of our own;
+ * other range forms are ignored and the whole file is sent, as HTTP allows.
+ */
+@Component
+public class DownloadProxy {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadProxy.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    // Relayed from the node as is; Content-Encoding is not among them because identity is requested
+    private static final List<String> RELAYED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES, HttpHeaders.LAST_MODIFIED, HttpHeaders.ETAG);
+
+    @Value("${metanode.url:http://localhost:8080}")
+    private String metaNodeUrl;
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    private TransferMetrics transferMetrics;
+
+    /**
+     * @param metadata DfsFile from the listing, or null when not known
+     * @param clientHeaders headers of the incoming request
+     */
+    public ResponseEntity<StreamingResponseBody> proxy(String fileName, DfsFile metadata, HttpHeaders clientHeaders) {
+        String etag = metadata != null && metadata.getHash() != null ? "\"" + metadata.getHash() + "\"" : null;
+
+        if (etag != null && matches(clientHeaders.getOrEmpty(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        if (metadata != null && metadata.getContainer() != null) {
+            return proxyPacked(fileName, metadata, etag, clientHeaders);
+        }
+        String url = metaNodeUrl + "/dfs/getfile/" + fileName;
+
+        ClientHttpResponse response = open(url, headers -> forwardConditions(clientHeaders, etag, headers));
+
+        try {
+            HttpStatusCode status = response.getStatusCode();
+            HttpHeaders headers = new HttpHeaders();
+            for (String name : RELAYED_HEADERS) {
+                List<String> values = response.getHeaders().get(name);
+                if (values != null) {
+                    headers.put(name, values);
+                }
+            }
+            if (etag != null) {
+                headers.setETag(etag);
+            }
+            if (status.isError()) {
+                // Errors carry no file data, so the node's body is not relayed
+                response.close();
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+                headers.remove(HttpHeaders.CONTENT_TYPE);
+                logger.debug("Proxied download of {} answered {}", fileName, status);
+                return ResponseEntity.status(status).headers(headers).build();
+            }
+            if (status == HttpStatus.NOT_MODIFIED) {
+                response.close();
+                return ResponseEntity.status(status).headers(headers).build();
+            }
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(baseName(fileName), StandardCharsets.UTF_8).build());
+            return ResponseEntity.status(status).headers(headers).body(relay(url, response));
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw new RuntimeException("Failed to proxy " + fileName + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> proxyPacked(String fileName, DfsFile metadata, String etag,
+                                                              HttpHeaders clientHeaders) {
+        String url = metaNodeUrl + "/dfs/getfile/" + metadata.getContainer();
+        long length = metadata.getSize();
+        String ifRange = clientHeaders.getFirst(HttpHeaders.IF_RANGE);
+        long[] range = ifRange == null || ifRange.equals(etag) ? parseRange(clientHeaders.getFirst(HttpHeaders.RANGE), length) : null;
+        if (range != null && range.length == 0) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length).build();
+        }
+        long first = range != null ? range[0] : 0;
+        long last = range != null ? range[1] : length - 1;
+        ClientHttpResponse response = open(url, headers -> {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, "identity");
+            headers.set(HttpHeaders.RANGE, "bytes=" + (metadata.getOffset() + first) + "-" + (metadata.getOffset() + last));
+        });
+        try {
+            if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+                // Error, or a node that ignored the range: the container's bytes are not the file's
+                HttpStatusCode nodeStatus = response.getStatusCode();
+                response.close();
+                logger.debug("Proxied download of packed {} answered {}", fileName, nodeStatus);
+                HttpStatusCode status = nodeStatus.isError() ? nodeStatus : HttpStatus.BAD_GATEWAY;
+                return ResponseEntity.status(status).build();
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentLength(last - first + 1);
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            if (etag != null) {
+                headers.setETag(etag);
+            }
+            if (range != null) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + length);
+            }
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename(baseName(fileName), StandardCharsets.UTF_8).build());
+            return ResponseEntity.status(range != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                    .headers(headers).body(relay(url, response));
+        } catch (IOException | RuntimeException e) {
+            response.close();
+            throw new RuntimeException("Failed to proxy " + fileName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return {first, last} of a single satisfiable range, an empty array for an
+     *         unsatisfiable one, or null when there is no range to honour
+     */
+    static long[] parseRange(String header, long length) {
+        Matcher matcher = header != null ? SINGLE_RANGE.matcher(header.trim()) : null;
+        if (matcher == null || !matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                long suffix = Long.parseLong(matcher.group(2));
+                return suffix == 0 ? new long[0] : new long[] {Math.max(0, length - suffix), length - 1};
+            }
+            long first = Long.parseLong(matcher.group(1));
+            long last = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)), length - 1);
+            if (first >= length) {
+                return new long[0];
+            }
+            return first <= last ? new long[] {first, last} : null;
+        } catch (NumberFormatException e) {
+            return null; // Too large to be meaningful, serve the whole file
+        }
+    }
+
+    private ClientHttpResponse open(String url, Consumer<HttpHeaders> requestHeaders) {
+        return transferMetrics.record("download-proxy", url, () -> {
+            try {
+                URI uri = UriComponentsBuilder.fromHttpUrl(url).build().encode().toUri();
+                ClientHttpRequest request = restTemplate.getRequestFactory().createRequest(uri, HttpMethod.GET);
+                requestHeaders.accept(request.getHeaders());
+                return request.execute();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open " + url + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    private StreamingResponseBody relay(String url, ClientHttpResponse response) {
+        return out -> {
+            long copied = 0;
+            try (response; InputStream in = response.getBody()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    copied += n;
+                }
+                out.flush();
+            } finally {
+                // Also counts what reached a client that hung up halfway
+                transferMetrics.recordBytes("download", url, copied);
+            }
+        };
+    }
+
+    /**
+     * Copies Range to the node, dropping it when an If-Range does not match our ETag so
+     * that the client gets the whole, current file. Without an ETag of our own the
+     * conditional headers go to the node, which decides.
+     */
+    private void forwardConditions(HttpHeaders clientHeaders, String etag, HttpHeaders nodeHeaders) {
+        // Range offsets are raw bytes, so the body must not be content-encoded
+        nodeHeaders.set(HttpHeaders.ACCEPT_ENCODING, "identity");
+        String range = clientHeaders.getFirst(HttpHeaders.RANGE);
+        String ifRange = clientHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (etag == null) {
+            copy(clientHeaders, nodeHeaders, HttpHeaders.RANGE);
+            copy(clientHeaders, nodeHeaders, HttpHeaders.IF_RANGE);
+            copy(clientHeaders, nodeHeaders, HttpHeaders.IF_NONE_MATCH);
+            copy(clientHeaders, nodeHeaders, HttpHeaders.IF_MODIFIED_SINCE);
+        } else if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            nodeHeaders.set(HttpHeaders.RANGE, range);
+        }
+    }
+
+    private static void copy(HttpHeaders from, HttpHeaders to, String name) {
+        List<String> values = from.get(name);
+        if (values != null) {
+            to.put(name, values);
+        }
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        for (String candidate : String.join(",", ifNoneMatch).split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2); // Weak comparison, as RFC 9110 requires for If-None-Match
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String baseName(String fileName) {
+        return fileName.substring(fileName.lastIndexOf('/') + 1);
+    }
+}
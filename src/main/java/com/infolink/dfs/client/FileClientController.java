@@ -1,30 +1,45 @@
 package com.infolink.dfs.client;
 
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.infolink.dfs.shared.DfsFile;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 
 @Controller
 public class FileClientController {
     private static final Logger logger = LoggerFactory.getLogger(FileClientService.class);
 
     private final FileClientService fileClientService;
+    private final DirectoryListingCache listingCache;
+    private final UploadJobManager uploadJobManager;
+    private final DownloadProxy downloadProxy;
 
-    public FileClientController(FileClientService fileClientService) {
+    public FileClientController(FileClientService fileClientService, DirectoryListingCache listingCache,
+                                UploadJobManager uploadJobManager, DownloadProxy downloadProxy) {
         this.fileClientService = fileClientService;
+        this.listingCache = listingCache;
+        this.uploadJobManager = uploadJobManager;
+        this.downloadProxy = downloadProxy;
     }
 
     @GetMapping("/")
@@ -46,39 +61,143 @@ public class FileClientController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Uploads every file part of the request and returns the result of each one. The
+     * metanode lookups of later files overlap the transfers of earlier ones.
+     */
+    @PostMapping(path = "/upload/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> uploadFiles(@RequestParam("files") List<MultipartFile> files,
+                                         @RequestParam(value = "targetDfsDir", defaultValue = "/") String targetDfsDir) {
+        String username = System.getProperty("user.name");
+        try {
+            return ResponseEntity.ok(fileClientService.uploadFilesToServer(username, files, targetDfsDir));
+        } catch (Exception e) {
+            logger.error("Error uploading files: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to upload files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the file as the raw request body (not multipart) and forwards it to the
+     * data node as it arrives, so it is neither spooled nor held in memory here.
+     */
+    @PostMapping(path = "/upload/stream", consumes = MediaType.ALL_VALUE)
+    public ResponseEntity<String> uploadStream(@RequestParam("filename") String filename,
+                                               @RequestParam(value = "targetDfsDir", defaultValue = "/") String targetDfsDir,
+                                               HttpServletRequest request) {
+        long size = request.getContentLengthLong();
+        if (size < 0) {
+            // The multipart part to the node needs its length up front
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).body("Content-Length is required");
+        }
+        String username = System.getProperty("user.name");
+        try {
+            String response = fileClientService.uploadStreamToServer(username, filename, request.getInputStream(), size, targetDfsDir,
+                    (transferred, total) -> logger.trace("Upload {}: {}/{} bytes", filename, transferred, total));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error streaming upload: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to upload file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Downloads the file into download.dir. With dir, the file's listing entry is looked
+     * up first, so the download can be served from the block cache by its hash, and a
+     * file packed into a container is read from its range of the container (such a
+     * file is not stored under its own name, so it cannot be downloaded without dir).
+     */
     @GetMapping("/download")
-    public ResponseEntity<String> downloadFile(@RequestParam("filename") String filename) {
+    public ResponseEntity<String> downloadFile(@RequestParam("filename") String filename,
+                                               @RequestParam(value = "dir", required = false) String dir) {
         logger.info("Get/download called for filename: {}", filename);
         
         try {
-            fileClientService.downloadFileFromServer(filename); // Download the file from the server
+            DfsFile metadata = findMetadata(dir, filename);
+            long bytes = fileClientService.downloadFileFromServer(filename, metadata,
+                    (transferred, total) -> logger.trace("Download {}: {}/{} bytes", filename, transferred, total));
 
             // Return a success message or the path of the downloaded file
-            return ResponseEntity.ok("File downloaded successfully: " + filename); // or the full path if you prefer
+            return ResponseEntity.ok("File downloaded successfully: " + filename + " (" + bytes + " bytes)"); // or the full path if you prefer
         } catch (Exception e) {
             logger.error("Error downloading file: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to download file: " + e.getMessage());
         }
     }
 
+    /**
+     * Streams the file to the caller instead of saving it on this host. With dir, the
+     * file's listing entry supplies the ETag for conditional requests.
+     */
+    @GetMapping("/download/stream")
+    public ResponseEntity<StreamingResponseBody> streamFile(@RequestParam("filename") String filename,
+                                                            @RequestParam(value = "dir", required = false) String dir,
+                                                            @RequestHeader HttpHeaders headers) {
+        // Without metadata the bytes are still served, just without an ETag of our own
+        return downloadProxy.proxy(filename, findMetadata(dir, filename), headers);
+    }
+
+    /**
+     * @return the file's listing entry, or null without dir or when the listing is unavailable
+     */
+    private DfsFile findMetadata(String dir, String filename) {
+        if (dir == null) {
+            return null;
+        }
+        try {
+            return fileClientService.findFileInListing(dir, filename);
+        } catch (RuntimeException e) {
+            logger.warn("Listing of {} unavailable for {}: {}", dir, filename, e.getMessage());
+            return null;
+        }
+    }
+
     @GetMapping("/file-list")
-    public String getFileList(Model model) {
-        List<DfsFile> files = fileClientService.getFileListFromServer("/upload");
-        model.addAttribute("files", files);
+    public String getFileList(@RequestParam(value = "page", defaultValue = "0") int page,
+                              @RequestParam(value = "size", defaultValue = "100") int size,
+                              Model model) {
+        page = Math.max(page, 0);
+        size = Math.min(Math.max(size, 1), 1000);
+        FileListPage fileListPage = fileClientService.getFileListPage("/upload", page, size);
+        model.addAttribute("files", fileListPage.getFiles());
+        model.addAttribute("page", fileListPage);
         return "file-list";
     }
     
+    @GetMapping("/file-list/cache-stats")
+    @ResponseBody
+    public Map<String, Object> getFileListCacheStats() {
+        return Map.of(
+            "entries", listingCache.size(),
+            "hits", listingCache.getHits(),
+            "misses", listingCache.getMisses(),
+            "evictions", listingCache.getEvictions(),
+            "expirations", listingCache.getExpirations()
+        );
+    }
+    
     @GetMapping("/upload-directory")
     public String uploadDirectoryPage() {
         return "upload-directory"; // returns upload-directory.html
     }
 
+    /**
+     * Starts the upload as a background job and returns at once with its ID. Progress
+     * is polled from /upload-jobs/{id} or streamed from /upload-jobs/{id}/events. With
+     * sync=true only files that changed since the last sync of the pair are uploaded.
+     */
     @PostMapping("/upload-directory")
-    public ResponseEntity<String> uploadDirectory(@RequestParam("directory") String directoryPath, @RequestParam("targetDfsDir") String targetDfsDir) {
+    public ResponseEntity<?> uploadDirectory(@RequestParam("directory") String directoryPath, @RequestParam("targetDfsDir") String targetDfsDir,
+                                             @RequestParam(value = "sync", defaultValue = "false") boolean sync,
+                                             @RequestParam(value = "reportDeletions", defaultValue = "false") boolean reportDeletions) {
         try {
             String username = System.getProperty("user.name");
-            fileClientService.uploadFilesFromDirectory(username, directoryPath, targetDfsDir);
-            return ResponseEntity.ok("All files uploaded successfully from: " + directoryPath + " to " + targetDfsDir);
+            UploadJob job = uploadJobManager.submit(username, directoryPath, targetDfsDir, sync, reportDeletions);
+            return ResponseEntity.accepted()
+                                 .location(URI.create("/upload-jobs/" + job.getId()))
+                                 .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Failed to upload directory: " + e.getMessage());
         } catch (Exception e) {
             logger.error("Error uploading directory: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -86,6 +205,44 @@ public class FileClientController {
         }
     }
 
+    @GetMapping("/upload-jobs")
+    @ResponseBody
+    public List<UploadJob> getUploadJobs() {
+        return uploadJobManager.getJobs();
+    }
+
+    @GetMapping("/upload-jobs/{id}")
+    public ResponseEntity<UploadJob> getUploadJob(@PathVariable("id") String id) {
+        UploadJob job = uploadJobManager.getJob(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Counters and per-file results of a job; results are limited to the first files,
+     * with resultsTruncated set when there were more.
+     */
+    @GetMapping("/upload-jobs/{id}/summary")
+    public ResponseEntity<UploadSummary> getUploadJobSummary(@PathVariable("id") String id) {
+        UploadJob job = uploadJobManager.getJob(id);
+        return job != null ? ResponseEntity.ok(job.getSummary()) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping(path = "/upload-jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamUploadJob(@PathVariable("id") String id) {
+        UploadJob job = uploadJobManager.getJob(id);
+        return job != null ? ResponseEntity.ok(uploadJobManager.subscribe(job)) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/upload-jobs/{id}")
+    public ResponseEntity<String> cancelUploadJob(@PathVariable("id") String id) {
+        if (uploadJobManager.getJob(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return uploadJobManager.cancel(id)
+                ? ResponseEntity.accepted().body("Cancellation requested")
+                : ResponseEntity.status(HttpStatus.CONFLICT).body("Job already finished");
+    }
+
     
     // Inner class to represent the request for upload
     public static class RequestUpload {
@@ -8,166 +8,1066 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.infolink.dfs.shared.DfsFile;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.unit.DataSize;
+
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class FileClientService {
     private static final Logger logger = LoggerFactory.getLogger(FileClientService2.class);
 
+    static final String FILE_EXISTS = "File already exists at the given location.";
+
     @Value("${download.dir}")
     private String downloadRoot; // Will be injected from application.properties
+    @Value("${metanode.url:http://localhost:8080}")
+    private String metaNodeUrl;
+    @Value("${upload.parallel.enabled:true}")
+    private boolean parallelUpload;
+    @Value("${upload.parallel.threads:8}")
+    private int uploadThreads;
+    @Value("${upload.parallel.max-in-flight:32}")
+    private int maxInFlight; // Files handed to the pool but not yet finished
+    @Value("${upload.batch.size:100}")
+    private int uploadBatchSize; // Files resolved per /metadata/upload-url/batch call
+    @Value("${upload.dedup.enabled:true}")
+    private boolean dedupEnabled; // Send content hashes so the metanode can skip known content
+    @Value("${upload.hash.threads:4}")
+    private int hashThreads;
     @Autowired
     private RestTemplate restTemplate;
-    private String metaNodeUrl;
+    @Value("${upload.block.enabled:true}")
+    private boolean blockUploadEnabled;
+    @Value("${upload.block.threshold:64MB}")
+    private DataSize blockThreshold; // Files at least this large are uploaded as blocks
+    @Value("${upload.pack.enabled:false}")
+    private boolean packEnabled;
+    @Value("${upload.pack.threshold:64KB}")
+    private DataSize packThreshold; // Directory-upload files smaller than this are packed into containers
+    @Value("${upload.pack.container-size:64MB}")
+    private DataSize containerSize;
+    @Value("${upload.pack.dir:${java.io.tmpdir}}")
+    private String packDir; // Where containers are assembled before they are uploaded
+    @Value("${upload.pack.target-dir:/.dfspack}")
+    private String packTargetDir; // Reserved DFS directory of the containers, kept out of users' directories
+    @Autowired
+    private ContentHasher contentHasher;
+    @Autowired
+    private BlockUploader blockUploader;
+    @Autowired
+    private RangeDownloader rangeDownloader;
+    @Autowired
+    private TransferJournal transferJournal;
+    @Autowired
+    private DirectoryListingCache listingCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransferMetrics transferMetrics;
+    @Autowired(required = false)
+    private ReactiveTransferClient reactiveTransferClient; // Present when transfer.backend=webclient
+    @Autowired
+    private CompressionPolicy compressionPolicy;
+    @Autowired
+    private NodeRegistry nodeRegistry;
+    @Autowired
+    private MetadataCalls metadataCalls;
+    @Autowired
+    private SyncIndex syncIndex;
+    @Autowired
+    private DirectoryScanner directoryScanner;
+    @Autowired
+    private BlockCache blockCache;
     private String USER = "user";
+    private ExecutorService uploadExecutor;
+    private ExecutorService hashExecutor; // Reads whole files, so kept apart from the uploads and the common pool
+    private volatile boolean batchUploadUrlSupported = true;
+    private volatile boolean pagedListingSupported = true;
+    private volatile boolean batchCommitSupported = true;
     
     @PostConstruct
     public void postConstruct() {
-    	this.metaNodeUrl = "http://localhost:8080";
+    	this.uploadExecutor = Executors.newFixedThreadPool(uploadThreads, new CustomizableThreadFactory("dfs-upload-"));
+    	this.hashExecutor = Executors.newFixedThreadPool(hashThreads, new CustomizableThreadFactory("dfs-hash-"));
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	uploadExecutor.shutdownNow();
+    	hashExecutor.shutdownNow();
     }
     
-    public void uploadFilesFromDirectory(String username, String directoryPath, String targetDfsDir) {
-    	logger.debug("Upload directory to server. Username={}, directoryPath={}, targetDfsDir={}", username, directoryPath, targetDfsDir);
+    public UploadSummary uploadFilesFromDirectory(String username, String directoryPath, String targetDfsDir) {
+        return uploadFilesFromDirectory(username, directoryPath, targetDfsDir,
+                new UploadSummary(directoryPath, targetDfsDir), () -> false);
+    }
+
+    /**
+     * Uploads a directory tree, recording progress into the given summary as it goes.
+     * Once cancelled returns true, no further files are started; uploads already
+     * running are allowed to finish.
+     */
+    public UploadSummary uploadFilesFromDirectory(String username, String directoryPath, String targetDfsDir,
+                                                  UploadSummary summary, BooleanSupplier cancelled) {
+        return uploadDirectory(username, directoryPath, targetDfsDir, summary, cancelled, false, false);
+    }
+
+    public UploadSummary syncDirectory(String username, String directoryPath, String targetDfsDir, boolean reportDeletions) {
+        return syncDirectory(username, directoryPath, targetDfsDir, reportDeletions,
+                new UploadSummary(directoryPath, targetDfsDir), () -> false);
+    }
+
+    /**
+     * Incremental form of uploadFilesFromDirectory. A local index of what earlier syncs
+     * of this directory pair uploaded (see SyncIndex) is consulted first: files whose
+     * size and mtime match are skipped without reading them or asking the metanode, and
+     * files that were only touched are skipped after hashing. With reportDeletions the
+     * summary lists the indexed files that no longer exist locally; nothing is deleted
+     * from DFS.
+     */
+    public UploadSummary syncDirectory(String username, String directoryPath, String targetDfsDir, boolean reportDeletions,
+                                       UploadSummary summary, BooleanSupplier cancelled) {
+        return uploadDirectory(username, directoryPath, targetDfsDir, summary, cancelled, true, reportDeletions);
+    }
+
+    private UploadSummary uploadDirectory(String username, String directoryPath, String targetDfsDir, UploadSummary summary,
+                                          BooleanSupplier cancelled, boolean sync, boolean reportDeletions) {
+    	logger.debug("Upload directory to server. Username={}, directoryPath={}, targetDfsDir={}, sync={}", username, directoryPath, targetDfsDir, sync);
     	
         File directory = new File(directoryPath);
         if (!directory.isDirectory()) {
             throw new IllegalArgumentException("Provided path is not a directory.");
         }
 
-        // Recursively upload files one by one
-        uploadFilesRecursively(username, directory, targetDfsDir);
+        SyncIndex.Session index = sync ? syncIndex.open(directory, targetDfsDir) : null;
+        DirectoryUploadRun run = new DirectoryUploadRun(username, targetDfsDir, summary, cancelled, index, reportDeletions);
+        try {
+            // Files are handed to the run as the scanner finds them, so uploads overlap the walk
+            directoryScanner.scan(directory.toPath(), (path, attrs) -> run.add(path.toFile(), attrs), cancelled);
+            run.walkCompleted = !cancelled.getAsBoolean();
+        } catch (IOException e) {
+            logger.error("Error scanning directory {}: {}", directoryPath, e.getMessage());
+            run.finish();
+            throw new RuntimeException("Directory scan failed: " + e.getMessage(), e);
+        }
+        summary.scanCompleted();
+        run.finish();
+
+        logger.info("Directory upload finished. uploaded={}, skipped={}, failed={}, bytes={}, elapsed={}ms",
+                summary.getUploaded(), summary.getSkipped(), summary.getFailed(),
+                summary.getBytesUploaded(), summary.getElapsedMillis());
+        return summary;
+    }
+
+    /**
+     * @param journalKey key of the file as the walk saw it; read from the file here, a
+     *        file modified since the walk would be journaled under its new size and
+     *        mtime and skipped by a resumed run
+     */
+    private UploadSummary.FileResult uploadSingleFile(List<String> nodeUrls, String username, LocalFile local, String journalKey,
+                                                      String targetDfsDir, BlockUploader.BlockHashes hashes) {
+        File file = local.file;
+        try {
+            String ret = uploadFileToNodes(nodeUrls, username, file, targetDfsDir, hashes);
+            logger.debug("uploadFileToServer(...) returns: {}", ret);
+            transferJournal.markFileCompleted(journalKey);
+            return new UploadSummary.FileResult(local.path(), local.size, UploadSummary.Status.UPLOADED, ret);
+        } catch (Exception e) {
+            logger.error("Error uploading file {}: {}", local.path(), e.getMessage());
+            return new UploadSummary.FileResult(local.path(), local.size, UploadSummary.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Non-blocking counterpart of uploadSingleFile for the WebClient backend. The
+     * returned Mono always completes with a result, failures included.
+     */
+    private Mono<UploadSummary.FileResult> uploadSingleFileAsync(List<String> nodeUrls, String username, LocalFile local,
+                                                                 String journalKey, String targetDfsDir, String hash) {
+        File file = local.file;
+        long size = local.size;
+        return nodeRegistry.executeAsync(nodeUrls, uploadUrl -> transferMetrics.recordAsync("upload", uploadUrl,
+                        reactiveTransferClient.upload(uploadUrl, username, file, targetDfsDir, hash))
+                    .doOnSuccess(ret -> transferMetrics.recordBytes("upload", uploadUrl, size)))
+                .publishOn(Schedulers.boundedElastic()) // Keep the journal write off the event loop
+                .map(ret -> {
+                    transferJournal.markFileCompleted(journalKey);
+                    return new UploadSummary.FileResult(file.getAbsolutePath(), size, UploadSummary.Status.UPLOADED, ret);
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error uploading file {}: {}", file.getAbsolutePath(), e.getMessage());
+                    return Mono.just(new UploadSummary.FileResult(file.getAbsolutePath(), size,
+                            UploadSummary.Status.FAILED, e.getMessage()));
+                });
+    }
+
+    private boolean usesBlockUpload(File file) {
+        return blockUploadEnabled && file.length() >= blockThreshold.toBytes();
+    }
+
+    /**
+     * A file found by a directory walk, with the size and mtime the walk saw. The sync
+     * index records those rather than what the file looks like once it is uploaded, so
+     * a file that changes during its upload is still seen as changed by the next sync.
+     */
+    private static final class LocalFile {
+        final File file;
+        final long size;
+        final long mtime;
+
+        LocalFile(File file, BasicFileAttributes attrs) {
+            this.file = file;
+            this.size = attrs.size();
+            this.mtime = attrs.lastModifiedTime().toMillis();
+        }
+
+        String path() {
+            return file.getAbsolutePath();
+        }
     }
 
-    private void uploadFilesRecursively(String username, File directory, String targetDfsDir) {
-        File[] files = directory.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                	logger.debug("upload the subdirectory: {}", file.getName());
-                    uploadFilesRecursively(username, file, targetDfsDir); // Recur into the directory
+    /**
+     * State of one directory upload. Files are collected into batches, each batch is
+     * resolved against the metanode in one call, and the files that need uploading are
+     * handed to the upload pool (or uploaded inline when parallel upload is disabled).
+     * <p>
+     * With upload.pack.enabled, files below upload.pack.threshold skip all of that: they
+     * are streamed into a PackContainer as the walk finds them, and every full container
+     * is uploaded as one object, after which its files are committed with one batched
+     * metadata call, each DfsFile recording the container, offset and size. Containers
+     * are stored in the reserved upload.pack.target-dir, not next to the files they
+     * hold. Packed files are not deduplicated by the metanode.
+     */
+    private class DirectoryUploadRun {
+        private PackContainer.Writer container; // Container being filled, null when none is open
+        private List<LocalFile> containerFiles = new ArrayList<>(); // Files in the container, in entry order
+        private final String username;
+        private final String targetDfsDir;
+        private final UploadSummary summary;
+        private final BooleanSupplier cancelled;
+        private final SyncIndex.Session index; // Null unless syncing
+        private final boolean reportDeletions;
+        private boolean walkCompleted; // The whole tree was seen, so unseen index entries were deleted
+        // Bounds the number of queued and running uploads, so walking a huge tree
+        // never piles up more than maxInFlight pending tasks. Null in sequential mode.
+        private final Semaphore inFlight;
+        private final List<LocalFile> pending = new ArrayList<>();
+
+        DirectoryUploadRun(String username, String targetDfsDir, UploadSummary summary, BooleanSupplier cancelled,
+                           SyncIndex.Session index, boolean reportDeletions) {
+            this.username = username;
+            this.targetDfsDir = targetDfsDir;
+            this.summary = summary;
+            this.cancelled = cancelled;
+            this.index = index;
+            this.reportDeletions = reportDeletions;
+            this.inFlight = parallelUpload ? new Semaphore(maxInFlight) : null;
+        }
+
+        void add(File file, BasicFileAttributes attrs) {
+            logger.debug("upload file: {}", file.getName());
+            summary.fileFound(attrs.size());
+            LocalFile local = new LocalFile(file, attrs);
+            if (index != null && index.isUnchanged(file, local.size, local.mtime)) {
+                summary.record(new UploadSummary.FileResult(local.path(), local.size,
+                        UploadSummary.Status.SKIPPED, "Unchanged (sync index)"));
+                return;
+            }
+            // Files finished by an earlier, interrupted run are skipped without asking the metanode
+            if (transferJournal.isFileCompleted(journalKey(local))) {
+                record(local, null, new UploadSummary.FileResult(local.path(), local.size,
+                        UploadSummary.Status.SKIPPED, "Already uploaded (journal)"));
+                return;
+            }
+            if (packEnabled && local.size < packThreshold.toBytes()) {
+                pack(local);
+                return;
+            }
+            pending.add(local);
+            if (pending.size() >= uploadBatchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pending.isEmpty() || cancelled.getAsBoolean()) {
+                pending.clear();
+                return;
+            }
+            List<LocalFile> batch = new ArrayList<>(pending);
+            pending.clear();
+
+            List<BlockUploader.BlockHashes> hashes = null;
+            if (dedupEnabled) {
+                hashes = hashBatch(batch);
+                if (index != null) {
+                    dropTouchedFiles(batch, hashes);
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                }
+            }
+
+            List<UploadResponse> uploadResponses;
+            try {
+                uploadResponses = getUploadResponses(batch.stream().map(LocalFile::path).toList(),
+                        hashes != null ? hashes.stream().map(FileClientService::fileHash).toList() : null, targetDfsDir);
+            } catch (Exception e) {
+                logger.error("Error resolving upload URLs for {} files: {}", batch.size(), e.getMessage());
+                for (LocalFile local : batch) {
+                    summary.record(new UploadSummary.FileResult(local.path(), local.size,
+                            UploadSummary.Status.FAILED, e.getMessage()));
+                }
+                return;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                LocalFile local = batch.get(i);
+                UploadResponse uploadResponse = uploadResponses.get(i);
+                BlockUploader.BlockHashes fileHashes = hashes != null ? hashes.get(i) : null;
+                if (uploadResponse.isExists()) {
+                    transferJournal.markFileCompleted(journalKey(local));
+                    record(local, fileHash(fileHashes), new UploadSummary.FileResult(local.path(),
+                            local.size, UploadSummary.Status.SKIPPED, FILE_EXISTS));
                 } else {
-                    // Use CustomMultipartFile directly
-                    
-                    logger.debug("upload file: {}", file.getName());
+                    dispatch(local, uploadResponse.getNodeUrls(), fileHashes);
+                }
+            }
+            listingCache.invalidate(targetDfsDir);
+        }
+
+        /**
+         * Hashes the files of a batch in parallel. Each file is streamed through the
+         * digest once, and files that will be sent as blocks get their block hashes in
+         * the same pass; a file that cannot be read gets null and is uploaded without
+         * the dedup check, so the upload itself reports the error.
+         */
+        private List<BlockUploader.BlockHashes> hashBatch(List<LocalFile> batch) {
+            return hashInParallel(batch, local -> {
+                try {
+                    return hashFile(local.file);
+                } catch (IOException e) {
+                    logger.warn("Could not hash file {}: {}", local.path(), e.getMessage());
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Removes the files whose mtime moved but whose content matches the sync index,
+         * together with their hashes, and records them as unchanged.
+         */
+        private void dropTouchedFiles(List<LocalFile> batch, List<BlockUploader.BlockHashes> hashes) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                LocalFile local = batch.get(i);
+                String hash = fileHash(hashes.get(i));
+                if (index.hasContent(local.file, local.size, hash)) {
+                    record(local, hash, new UploadSummary.FileResult(local.path(), local.size,
+                            UploadSummary.Status.SKIPPED, "Unchanged content (sync index)"));
+                    batch.remove(i);
+                    hashes.remove(i);
+                }
+            }
+        }
+
+        /**
+         * Journal key of the file as the walk saw it, so a file changed during its upload
+         * is not taken as uploaded by a resumed run.
+         */
+        private String journalKey(LocalFile local) {
+            return TransferJournal.uploadKey(local.file, local.size, local.mtime, targetDfsDir);
+        }
+
+        /**
+         * Records a result, and when syncing, remembers every file that is now in DFS,
+         * with the size and mtime it had when the walk found it.
+         */
+        private void record(LocalFile local, String hash, UploadSummary.FileResult result) {
+            if (index != null && result.getStatus() != UploadSummary.Status.FAILED) {
+                index.update(local.file, local.size, local.mtime, hash);
+            }
+            summary.record(result);
+        }
+
+        private void dispatch(LocalFile local, List<String> nodeUrls, BlockUploader.BlockHashes hashes) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            File file = local.file;
+            String hash = fileHash(hashes);
+            if (inFlight == null) {
+                record(local, hash, uploadSingleFile(nodeUrls, username, local, journalKey(local), targetDfsDir, hashes));
+                return;
+            }
+            inFlight.acquireUninterruptibly();
+            if (reactiveTransferClient != null && !usesBlockUpload(file)) {
+                // No thread is held while the upload runs, only the in-flight permit
+                uploadSingleFileAsync(nodeUrls, username, local, journalKey(local), targetDfsDir, hash)
+                        .doFinally(signal -> inFlight.release())
+                        .subscribe(result -> record(local, hash, result));
+                return;
+            }
+            try {
+                uploadExecutor.execute(() -> {
+                    try {
+                        record(local, hash, uploadSingleFile(nodeUrls, username, local, journalKey(local), targetDfsDir, hashes));
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                summary.record(new UploadSummary.FileResult(local.path(), local.size,
+                        UploadSummary.Status.FAILED, "Upload rejected: " + e.getMessage()));
+            }
+        }
+
+        private void pack(LocalFile local) {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            try {
+                if (index != null && index.mayHaveContent(local.file, local.size)) {
+                    // Touched but maybe unchanged: packed files never reach dropTouchedFiles,
+                    // and a file this small is read again from the page cache if it is packed
+                    String hash = contentHasher.hash(local.file.toPath());
+                    if (index.hasContent(local.file, local.size, hash)) {
+                        record(local, hash, new UploadSummary.FileResult(local.path(), local.size,
+                                UploadSummary.Status.SKIPPED, "Unchanged content (sync index)"));
+                        return;
+                    }
+                }
+                if (container == null) {
+                    Files.createDirectories(Path.of(packDir));
+                    container = new PackContainer.Writer(Path.of(packDir, "pack-" + UUID.randomUUID() + PackContainer.EXTENSION),
+                            contentHasher);
+                }
+                container.add(local.file.getName(), local.file.toPath(), local.size);
+                containerFiles.add(local);
+            } catch (IOException e) {
+                logger.error("Error packing file {}: {}", local.path(), e.getMessage());
+                summary.record(new UploadSummary.FileResult(local.path(), local.size,
+                        UploadSummary.Status.FAILED, "Packing failed: " + e.getMessage()));
+            }
+            if (container != null && container.size() >= containerSize.toBytes()) {
+                sealContainer();
+            }
+        }
+
+        /**
+         * Writes the index of the open container and hands it to the upload pool, so the
+         * next container fills while this one is sent.
+         */
+        private void sealContainer() {
+            PackContainer.Writer writer = container;
+            List<LocalFile> files = containerFiles;
+            container = null;
+            containerFiles = new ArrayList<>();
+            List<PackContainer.Entry> entries;
+            try {
+                entries = writer.finish();
+            } catch (IOException e) {
+                logger.error("Error writing container {}: {}", writer.getPath(), e.getMessage());
+                failPacked(files, "Packing failed: " + e.getMessage());
+                deleteContainer(writer.getPath());
+                return;
+            }
+            if (entries.isEmpty() || cancelled.getAsBoolean()) {
+                deleteContainer(writer.getPath());
+                return;
+            }
+            if (inFlight == null) {
+                uploadContainer(writer.getPath(), entries, files);
+                return;
+            }
+            inFlight.acquireUninterruptibly();
+            try {
+                uploadExecutor.execute(() -> {
                     try {
-                        String ret = uploadFileSystemResourceToServer(username, file, targetDfsDir);
-                        logger.debug("uploadFileToServer(...) returns: {}", ret);
-                    } catch (Exception e) {
-                        logger.error("Error uploading file {}: {}", file.getAbsolutePath(), e.getMessage());
+                        uploadContainer(writer.getPath(), entries, files);
+                    } finally {
+                        inFlight.release();
                     }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                failPacked(files, "Upload rejected: " + e.getMessage());
+                deleteContainer(writer.getPath());
+            }
+        }
+
+        private void uploadContainer(Path path, List<PackContainer.Entry> entries, List<LocalFile> files) {
+            File containerFile = path.toFile();
+            String containerName = containerFile.getName();
+            boolean stored = false;
+            try {
+                UploadResponse uploadResponse = getUploadResponse(containerFile.getAbsolutePath(), packTargetDir, null);
+                if (!uploadResponse.isExists()) { // Names are random, so this is the normal case
+                    uploadFileToNodes(uploadResponse.getNodeUrls(), username, containerFile, packTargetDir, null);
+                }
+                stored = true;
+                List<DfsFile> packed = new ArrayList<>(entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    PackContainer.Entry entry = entries.get(i);
+                    String name = files.get(i).file.getName();
+                    DfsFile dfsFile = new DfsFile(entry.getHash(), username, name, BlockUploader.dfsPath(targetDfsDir, name),
+                            entry.getLength(), false, null, null);
+                    dfsFile.setContainer(containerName);
+                    dfsFile.setOffset(entry.getOffset());
+                    packed.add(dfsFile);
+                }
+                commitFileMetadata(packed);
+                for (int i = 0; i < entries.size(); i++) {
+                    LocalFile local = files.get(i);
+                    transferJournal.markFileCompleted(journalKey(local));
+                    record(local, entries.get(i).getHash(), new UploadSummary.FileResult(local.path(),
+                            entries.get(i).getLength(), UploadSummary.Status.UPLOADED, "Packed into " + containerName));
+                }
+                logger.debug("Uploaded container {} with {} files", containerName, entries.size());
+            } catch (Exception e) {
+                logger.error("Error uploading container {}: {}", containerName, e.getMessage());
+                if (stored) {
+                    // The metanode has no delete call; the name lets a cleanup of the reserved directory find it
+                    logger.warn("Container {} is stored in {} but no file refers to it", containerName, packTargetDir);
+                    transferMetrics.recordOrphanedContainer();
                 }
+                failPacked(files, e.getMessage());
+            } finally {
+                deleteContainer(path);
             }
         }
+
+        private void failPacked(List<LocalFile> files, String message) {
+            for (LocalFile local : files) {
+                summary.record(new UploadSummary.FileResult(local.path(), local.size, UploadSummary.Status.FAILED, message));
+            }
+        }
+
+        private void deleteContainer(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("Could not delete container {}: {}", path, e.getMessage());
+            }
+        }
+
+        UploadSummary finish() {
+            flush();
+            if (container != null) {
+                sealContainer();
+            }
+            if (inFlight != null) {
+                inFlight.acquireUninterruptibly(maxInFlight); // Wait for the remaining uploads to drain
+            }
+            listingCache.invalidate(targetDfsDir);
+            if (index != null) {
+                // Deletions are only known after a complete walk
+                if (walkCompleted) {
+                    List<String> deleted = index.removeUnseen();
+                    if (!deleted.isEmpty()) {
+                        logger.info("{} files of the last sync to {} no longer exist locally", deleted.size(), targetDfsDir);
+                    }
+                    if (reportDeletions) {
+                        summary.setDeleted(deleted);
+                    }
+                }
+                index.save();
+            }
+            summary.complete();
+            return summary;
+        }
     }
     
     public String uploadFileSystemResourceToServer(String username, File file, String targetDfsDir) {
-        String uploadUrl = getUploadUrl(file.getAbsolutePath(), targetDfsDir);
-        logger.info("Upload URL: {}", uploadUrl);
+        BlockUploader.BlockHashes hashes = null;
+        if (dedupEnabled) {
+            try {
+                hashes = hashFile(file);
+            } catch (IOException e) {
+                throw new RuntimeException("File upload failed due to an error reading the file: " + e.getMessage());
+            }
+        }
+        UploadResponse uploadResponse = getUploadResponse(file.getAbsolutePath(), targetDfsDir, fileHash(hashes));
+        if (uploadResponse.isExists()) {
+            return FILE_EXISTS;
+        }
+        logger.info("Upload URL: {}", uploadResponse.getNodeUrl());
 
-        if (uploadUrl.equals("File already exists at the given location.")) {
-            return "File already exists at the given location.";
+        String ret = uploadFileToNodes(uploadResponse.getNodeUrls(), username, file, targetDfsDir, hashes);
+        listingCache.invalidate(targetDfsDir);
+        return ret;
+    }
+
+    /**
+     * Sends the file to the best of the candidate nodes the metanode offered, failing
+     * over to the next candidate when a node is down or overloaded. Large files are sent
+     * as blocks, and their metadata is committed to the metanode once a node has taken
+     * all of them, outside the failover, so a metanode error is not held against the node.
+     *
+     * @param hashes hashes from hashFile, or null when the file was not hashed
+     */
+    String uploadFileToNodes(List<String> nodeUrls, String username, File file, String targetDfsDir,
+                             BlockUploader.BlockHashes hashes) {
+        if (usesBlockUpload(file)) {
+            DfsFile dfsFile = nodeRegistry.execute(nodeUrls,
+                    uploadUrl -> uploadBlocksToNode(uploadUrl, username, file, targetDfsDir, hashes));
+            return commitFileMetadata(dfsFile);
         }
+        String hash = fileHash(hashes);
+        return nodeRegistry.execute(nodeUrls, uploadUrl -> uploadFileToNode(uploadUrl, username, file, targetDfsDir, hash));
+    }
 
+    /**
+     * Hashes the file for dedup. Files that will be sent as blocks are hashed with
+     * their blocks in the same read, so the block upload does not read them again.
+     */
+    private BlockUploader.BlockHashes hashFile(File file) throws IOException {
+        if (usesBlockUpload(file)) {
+            return blockUploader.hashBlocks(file.toPath());
+        }
+        return new BlockUploader.BlockHashes(contentHasher.hash(file.toPath()), null);
+    }
+
+    private static String fileHash(BlockUploader.BlockHashes hashes) {
+        return hashes != null ? hashes.fileHash : null;
+    }
+
+    /**
+     * Sends the file to a data-node URL that has already been resolved by the metanode.
+     * The content hash, when known, travels along so the node can store the file by it.
+     */
+    String uploadFileToNode(String uploadUrl, String username, File file, String targetDfsDir, String hash) {
+        if (usesBlockUpload(file)) {
+            return commitFileMetadata(uploadBlocksToNode(uploadUrl, username, file, targetDfsDir, null));
+        }
+        if (reactiveTransferClient != null) {
+            try {
+                String ret = transferMetrics.record("upload", uploadUrl,
+                        () -> reactiveTransferClient.uploadBlocking(uploadUrl, username, file, targetDfsDir, hash));
+                transferMetrics.recordBytes("upload", uploadUrl, file.length());
+                return ret;
+            } catch (Exception e) {
+                logger.error("Error during file upload: {}", e.getMessage());
+                throw new RuntimeException("File upload failed due to an error: " + e.getMessage(), e);
+            }
+        }
+
+        Supplier<Resource> fileResource = () -> new TransferUtils.SourceResource(new FileSystemResource(file));
+        try {
+            CompressionPolicy.Codec codec = compressionPolicy.choose(uploadUrl, fileResource.get(),
+                    new CustomMultipartFile(file).getContentType(), file.length());
+            return postFile(uploadUrl, username, fileResource, targetDfsDir, hash, codec, file.length());
+        } catch (Exception e) {
+            logger.error("Error during file upload: {}", e.getMessage());
+            throw new RuntimeException("File upload failed due to an error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Posts the multipart upload of one file to a data node. With a codec the file part
+     * is compressed while it is written and carries a Content-Encoding header, and the
+     * encoding and original size are sent as extra fields. A node that answers 415 to
+     * a compressed upload is sent the file again uncompressed.
+     *
+     * @param fileResource opens the file content; called once per attempt, since a
+     *        streamed upload can be read only once
+     */
+    private String postFile(String uploadUrl, String username, Supplier<Resource> fileResource, String targetDfsDir,
+                            String hash, CompressionPolicy.Codec codec, long size) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
 
         // Prepare request body with file and parameters
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        FileSystemResource fileResource = new FileSystemResource(file);
-        body.add("file", fileResource);
+        Resource content = fileResource.get();
+        CompressedResource compressed = codec != null ? new CompressedResource(content, codec) : null;
+        body.add("file", compressed != null ? compressed : content);
         body.add("user", username);
         body.add("targetDir", targetDfsDir);
+        if (hash != null) {
+            body.add("hash", hash);
+        }
+        if (codec != null) {
+            body.add("encoding", codec.getEncoding());
+            body.add("originalSize", String.valueOf(size));
+        }
 
         HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
         try {
             // Call the upload endpoint
-            ResponseEntity<String> response = restTemplate.exchange(
+            ResponseEntity<String> response = transferMetrics.record("upload", uploadUrl, () -> restTemplate.exchange(
                 uploadUrl,
                 HttpMethod.POST,
                 requestEntity,
                 String.class
-            );
-
+            ));
+            compressionPolicy.learn(uploadUrl, response.getHeaders());
+            // Bytes on the wire, so the metric shows what compression saves
+            transferMetrics.recordBytes("upload", uploadUrl, compressed != null ? compressed.getEncodedLength() : size);
             return response.getBody();
-        } catch (Exception e) {
-            logger.error("Error during file upload: {}", e.getMessage());
-            throw new RuntimeException("File upload failed due to an error: " + e.getMessage());
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            if (codec == null) {
+                throw e;
+            }
+            compressionPolicy.markUnsupported(uploadUrl);
+            return postFile(uploadUrl, username, fileResource, targetDfsDir, hash, null, size);
         }
     }
     
-    public String uploadFileToServer(String username, MultipartFile file, String targetDfsDir) {
-        String uploadUrl = getUploadUrl(file.getOriginalFilename(), targetDfsDir);
-        logger.info("Upload URL: {}", uploadUrl); // Debugging log
+    /**
+     * Uploads a large file to the node as parallel blocks and returns the metadata,
+     * including the block hashes, that still has to be committed to the metanode.
+     */
+    private DfsFile uploadBlocksToNode(String uploadUrl, String username, File file, String targetDfsDir,
+                                       BlockUploader.BlockHashes hashes) {
+        try {
+            return blockUploader.upload(uploadUrl, username, file, targetDfsDir, hashes);
+        } catch (IOException e) {
+            logger.error("Error reading file {} for block upload: {}", file.getAbsolutePath(), e.getMessage());
+            throw new RuntimeException("File upload failed due to an error reading the file: " + e.getMessage(),
+                    SourceReadException.of(file, e));
+        }
+    }
 
-        if (uploadUrl.equals("File already exists at the given location.")) {
-            return "File already exists at the given location.";
+    String commitFileMetadata(DfsFile dfsFile) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            ResponseEntity<String> response = transferMetrics.record("commit", metaNodeUrl, () -> restTemplate.exchange(
+                metaNodeUrl + "/metadata/file/commit", HttpMethod.POST, new HttpEntity<>(dfsFile, headers), String.class
+            ));
+            return response.getBody();
+        } catch (RestClientException e) {
+            logger.error("Error committing metadata for {}: {}", dfsFile.getPath(), e.getMessage());
+            throw new RuntimeException("Failed to commit file metadata: " + e.getMessage(), e);
         }
+    }
 
+    /**
+     * Commits many files with one call to /metadata/file/commit/batch, or one call per
+     * file when the metanode has no batch endpoint.
+     */
+    String commitFileMetadata(List<DfsFile> dfsFiles) {
+        if (!batchCommitSupported) {
+            String ret = null;
+            for (DfsFile dfsFile : dfsFiles) {
+                ret = commitFileMetadata(dfsFile);
+            }
+            return ret;
+        }
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        try {
+            ResponseEntity<String> response = transferMetrics.record("commit-batch", metaNodeUrl, () -> restTemplate.exchange(
+                metaNodeUrl + "/metadata/file/commit/batch", HttpMethod.POST, new HttpEntity<>(dfsFiles, headers), String.class
+            ));
+            return response.getBody();
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            logger.warn("Metanode does not support batched commits, falling back to per-file commits.");
+            batchCommitSupported = false;
+            return commitFileMetadata(dfsFiles);
+        } catch (RestClientException e) {
+            logger.error("Error committing metadata for {} files: {}", dfsFiles.size(), e.getMessage());
+            throw new RuntimeException("Failed to commit file metadata: " + e.getMessage(), e);
+        }
+    }
 
-        // Prepare request entity with file and parameters
-        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+    public String uploadFileToServer(String username, MultipartFile file, String targetDfsDir) {
+        String hash = null;
+        if (dedupEnabled) {
+            // The multipart file is already spooled, so this is a local read pass that
+            // can save the whole network transfer when the content is known.
+            try (InputStream in = file.getInputStream()) {
+                hash = contentHasher.hash(in);
+            } catch (IOException e) {
+                logger.error("Error accessing file stream: {}", e.getMessage());
+                throw new RuntimeException("File upload failed due to an error reading the file.");
+            }
+        }
+        String fileHash = hash;
+        UploadResponse uploadResponse = getUploadResponse(file.getOriginalFilename(), targetDfsDir, fileHash);
+        if (uploadResponse.isExists()) {
+            return FILE_EXISTS;
+        }
+        logger.info("Upload URL: {}", uploadResponse.getNodeUrl()); // Debugging log
 
         try {
-            // Wrap the file as a ByteArrayResource
-            ByteArrayResource fileResource = new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
+            String ret = postMultipartFile(uploadResponse.getNodeUrls(), username, file, targetDfsDir, fileHash);
+            listingCache.invalidate(targetDfsDir);
+            return ret;
+        } catch (Exception e) {
+            logger.error("Unexpected error during file upload: {}", e.getMessage());
+            throw new RuntimeException("File upload failed due to an unexpected error.", e);
+        }
+    }
+
+    private String postMultipartFile(List<String> nodeUrls, String username, MultipartFile file, String targetDfsDir, String hash) {
+        // Stream the file into the request body instead of copying it onto the heap. A
+        // streaming resource can be read only once, so every attempt opens its own.
+        Supplier<Resource> fileResource = () -> new TransferUtils.SourceResource(toStreamingResource(file));
+        return nodeRegistry.execute(nodeUrls, uploadUrl -> {
+            CompressionPolicy.Codec codec = compressionPolicy.choose(uploadUrl, file, file.getContentType(), file.getSize());
+            return postFile(uploadUrl, username, fileResource, targetDfsDir, hash, codec, file.getSize());
+        });
+    }
+
+    /**
+     * Uploads the files of one multi-part request as a pipeline: files are resolved
+     * with the metanode in batches of upload.batch.size, and the data transfers of a
+     * batch run on the upload pool while the next batch is hashed and resolved. At most
+     * upload.parallel.max-in-flight transfers run at once. A file that fails does not
+     * stop the others; every file gets a result in the summary.
+     */
+    public UploadSummary uploadFilesToServer(String username, List<MultipartFile> files, String targetDfsDir) {
+        UploadSummary summary = new UploadSummary(null, targetDfsDir);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        for (int from = 0; from < files.size(); from += uploadBatchSize) {
+            List<MultipartFile> batch = files.subList(from, Math.min(files.size(), from + uploadBatchSize));
+            batch.forEach(file -> summary.fileFound(file.getSize()));
+            List<String> hashes = dedupEnabled ? hashMultipartBatch(batch) : null;
+
+            List<UploadResponse> uploadResponses;
+            try {
+                uploadResponses = getUploadResponses(batch.stream().map(MultipartFile::getOriginalFilename).toList(), hashes, targetDfsDir);
+            } catch (Exception e) {
+                logger.error("Error resolving upload URLs for {} files: {}", batch.size(), e.getMessage());
+                batch.forEach(file -> summary.record(new UploadSummary.FileResult(file.getOriginalFilename(), file.getSize(),
+                        UploadSummary.Status.FAILED, e.getMessage())));
+                continue;
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                MultipartFile file = batch.get(i);
+                UploadResponse uploadResponse = uploadResponses.get(i);
+                String hash = hashes != null ? hashes.get(i) : null;
+                if (uploadResponse.isExists()) {
+                    summary.record(new UploadSummary.FileResult(file.getOriginalFilename(), file.getSize(),
+                            UploadSummary.Status.SKIPPED, FILE_EXISTS));
+                    continue;
                 }
-            };
-            body.add("file", fileResource);
-            body.add("user", username);
-            body.add("targetDir", targetDfsDir);
+                inFlight.acquireUninterruptibly();
+                try {
+                    uploadExecutor.execute(() -> {
+                        try {
+                            summary.record(new UploadSummary.FileResult(file.getOriginalFilename(), file.getSize(),
+                                    UploadSummary.Status.UPLOADED,
+                                    postMultipartFile(uploadResponse.getNodeUrls(), username, file, targetDfsDir, hash)));
+                        } catch (Exception e) {
+                            logger.error("Error uploading {}: {}", file.getOriginalFilename(), e.getMessage());
+                            summary.record(new UploadSummary.FileResult(file.getOriginalFilename(), file.getSize(),
+                                    UploadSummary.Status.FAILED, e.getMessage()));
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    summary.record(new UploadSummary.FileResult(file.getOriginalFilename(), file.getSize(),
+                            UploadSummary.Status.FAILED, "Upload rejected: " + e.getMessage()));
+                }
+            }
+        }
+        summary.scanCompleted();
+        inFlight.acquireUninterruptibly(maxInFlight); // Wait for the remaining transfers to drain
+        listingCache.invalidate(targetDfsDir);
+        summary.complete();
+        logger.info("Batch upload finished. uploaded={}, skipped={}, failed={}, bytes={}, elapsed={}ms",
+                summary.getUploaded(), summary.getSkipped(), summary.getFailed(),
+                summary.getBytesUploaded(), summary.getElapsedMillis());
+        return summary;
+    }
 
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+    /**
+     * Hashes the spooled parts of a batch in parallel; a part that cannot be read gets a
+     * null hash and is uploaded without the dedup check.
+     */
+    private List<String> hashMultipartBatch(List<MultipartFile> batch) {
+        return hashInParallel(batch, file -> {
+            try (InputStream in = file.getInputStream()) {
+                return contentHasher.hash(in);
+            } catch (IOException e) {
+                logger.warn("Could not hash part {}: {}", file.getOriginalFilename(), e.getMessage());
+                return null;
+            }
+        });
+    }
 
-            // Call the upload endpoint
-            ResponseEntity<String> response = restTemplate.exchange(
-                uploadUrl,
-                HttpMethod.POST,
-                requestEntity,
-                String.class
-            );
+    /**
+     * Applies the hash function to every item on the hash pool, upload.hash.threads at
+     * a time, and waits for all of them.
+     *
+     * @return a mutable list of the results, in item order
+     */
+    private <T, R> List<R> hashInParallel(List<T> items, Function<T, R> hash) {
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> hash.apply(item), hashExecutor));
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toCollection(ArrayList::new));
+    }
 
-            return response.getBody();
-        } catch (IOException e) {
-            logger.error("Error accessing file stream: {}", e.getMessage());
-            throw new RuntimeException("File upload failed due to an error reading the file.");
-        } catch (Exception e) {
-            logger.error("Unexpected error during file upload: {}", e.getMessage());
-            throw new RuntimeException("File upload failed due to an unexpected error.");
+    /**
+     * Forwards a raw upload body to the data node while it is still arriving, in one
+     * pass and with fixed memory: nothing is spooled to disk and no hash is computed,
+     * so the metanode can only dedupe by name and there is no compression (choosing a
+     * codec samples the content, and a 415 fallback would need to send it again). A
+     * node that fails before any byte was read is failed over like any upload; after
+     * that the stream cannot be replayed and the upload fails with that node's error.
+     *
+     * @param size exact length of the content
+     */
+    public String uploadStreamToServer(String username, String filename, InputStream content, long size,
+                                       String targetDfsDir, TransferProgressListener listener) {
+        UploadResponse uploadResponse = getUploadResponse(filename, targetDfsDir, null);
+        if (uploadResponse.isExists()) {
+            return FILE_EXISTS;
+        }
+        // A client that aborts the request is a failure of the source, not of the node
+        TransferUtils.ProgressInputStream in = new TransferUtils.ProgressInputStream(
+                new TransferUtils.SourceInputStream(content, filename), size, listener);
+        // A fresh wrapper per attempt: InputStreamResource refuses a second read even when
+        // the first attempt failed before consuming anything
+        Supplier<Resource> resource = () -> new InputStreamResource(in, filename) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+
+            @Override
+            public long contentLength() {
+                return size;
+            }
+        };
+        AtomicReference<RuntimeException> nodeFailure = new AtomicReference<>();
+        try {
+            String ret = nodeRegistry.execute(uploadResponse.getNodeUrls(), uploadUrl -> {
+                if (in.getCount() > 0) {
+                    // The next node was never contacted: a source failure makes the registry
+                    // stop without recording anything for it, and the caller sees the error
+                    // of the node that failed
+                    RuntimeException failure = nodeFailure.get();
+                    throw new RuntimeException(failure.getMessage(), new SourceReadException("Stream already partly sent after "
+                            + in.getCount() + " bytes, cannot retry on " + uploadUrl, failure));
+                }
+                try {
+                    return postFile(uploadUrl, username, resource, targetDfsDir, null, null, size);
+                } catch (RuntimeException e) {
+                    nodeFailure.set(e);
+                    throw e;
+                }
+            });
+            listingCache.invalidate(targetDfsDir);
+            logger.info("Streamed {} ({} bytes) to DFS {}", filename, in.getCount(), targetDfsDir);
+            return ret;
+        } catch (RuntimeException e) {
+            logger.error("Streamed upload of {} failed: {}", filename, e.getMessage());
+            throw new RuntimeException("File upload failed: " + e.getMessage(), e);
         }
     }
 
-    
+    /**
+     * Wraps a MultipartFile as a Resource that is read only while the request body is
+     * written. Files already on disk are sent from their path; anything else is
+     * streamed from its input stream with the known size as the part length.
+     */
+    static Resource toStreamingResource(MultipartFile file) {
+        if (file instanceof CustomMultipartFile) {
+            return new FileSystemResource(((CustomMultipartFile) file).getFile());
+        }
+        return new InputStreamResource(file, file.getOriginalFilename()) {
+            @Override
+            public String getFilename() {
+                return file.getOriginalFilename();
+            }
+
+            @Override
+            public long contentLength() {
+                return file.getSize();
+            }
+        };
+    }
+
     String getUploadUrl(String filename, String targetDir) {
+        return getUploadUrl(filename, targetDir, null);
+    }
+
+    /**
+     * @param hash content hash of the file, or null to check by filename only
+     */
+    String getUploadUrl(String filename, String targetDir, String hash) {
+        UploadResponse uploadResponse = getUploadResponse(filename, targetDir, hash);
+        return uploadResponse.isExists() ? FILE_EXISTS : uploadResponse.getNodeUrl();
+    }
+
+    /**
+     * Asks the metanode where to store a file. The response names the node to use and,
+     * when the metanode offers them, alternate candidates.
+     */
+    UploadResponse getUploadResponse(String filename, String targetDir, String hash) {
         // Prepare the request body using RequestUpload class
         RequestUpload requestBody = new RequestUpload("uuid-1234", filename, targetDir, "owner1");
+        setHash(requestBody, hash);
 
         // Set headers to indicate JSON content
         HttpHeaders headers = new HttpHeaders();
@@ -175,37 +1075,94 @@ public class FileClientService {
         HttpEntity<RequestUpload> request = new HttpEntity<>(requestBody, headers);
 
         // Send POST request and handle response
-        ResponseEntity<UploadResponse> response = restTemplate.exchange(
-            metaNodeUrl + "/metadata/upload-url", HttpMethod.POST, request, UploadResponse.class
-        );
-
-        if (response.getStatusCode() == HttpStatus.OK) {
-            UploadResponse uploadResponse = response.getBody();
-            if (uploadResponse != null && !uploadResponse.isExists()) {
-                return uploadResponse.getNodeUrl(); // Return the real node URL
-            } else {
-                return "File already exists at the given location.";
-            }
-        } else {
-            return "Failed to retrieve upload URL: " + response.getStatusCode();
+        ResponseEntity<UploadResponse> response = metadataCalls.retry("upload-url",
+            () -> transferMetrics.record("upload-url", metaNodeUrl, () -> restTemplate.exchange(
+                metaNodeUrl + "/metadata/upload-url", HttpMethod.POST, request, UploadResponse.class
+            )));
+
+        if (response.getStatusCode() != HttpStatus.OK) {
+            throw new RuntimeException("Failed to retrieve upload URL: " + response.getStatusCode());
         }
+        UploadResponse uploadResponse = response.getBody();
+        return uploadResponse != null ? uploadResponse : new UploadResponse(true, "");
     }    
     
+    /**
+     * Resolves uploads for many files with a single metanode round trip. The result
+     * holds the metanode's response for each filename, in order. Falls back to one
+     * getUploadResponse call per file when the metanode has no batch endpoint.
+     *
+     * @param hashes content hash per filename (entries may be null), or null to check by filename only
+     */
+    List<UploadResponse> getUploadResponses(List<String> filenames, List<String> hashes, String targetDir) {
+        if (!batchUploadUrlSupported) {
+            List<UploadResponse> uploadResponses = new ArrayList<>(filenames.size());
+            for (int i = 0; i < filenames.size(); i++) {
+                uploadResponses.add(getUploadResponse(filenames.get(i), targetDir, hashes != null ? hashes.get(i) : null));
+            }
+            return uploadResponses;
+        }
+
+        List<RequestUpload> requests = new ArrayList<>(filenames.size());
+        for (int i = 0; i < filenames.size(); i++) {
+            RequestUpload requestUpload = new RequestUpload(UUID.randomUUID().toString(), filenames.get(i), targetDir, "owner1");
+            setHash(requestUpload, hashes != null ? hashes.get(i) : null);
+            requests.add(requestUpload);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<RequestUploadBatch> request = new HttpEntity<>(new RequestUploadBatch(requests), headers);
+
+        ResponseEntity<UploadBatchResponse> response;
+        try {
+            response = metadataCalls.retry("upload-url-batch",
+                () -> transferMetrics.record("upload-url-batch", metaNodeUrl, () -> restTemplate.exchange(
+                    metaNodeUrl + "/metadata/upload-url/batch", HttpMethod.POST, request, UploadBatchResponse.class
+                )));
+        } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+            logger.warn("Metanode does not support batched upload-url requests, falling back to per-file requests.");
+            batchUploadUrlSupported = false;
+            return getUploadResponses(filenames, hashes, targetDir);
+        }
+
+        UploadBatchResponse batchResponse = response.getBody();
+        if (response.getStatusCode() != HttpStatus.OK || batchResponse == null
+                || batchResponse.getResponses() == null || batchResponse.getResponses().size() != filenames.size()) {
+            throw new RuntimeException("Failed to retrieve upload URLs: " + response.getStatusCode());
+        }
+
+        return batchResponse.getResponses();
+    }
+
+    private void setHash(RequestUpload requestUpload, String hash) {
+        if (hash != null) {
+            requestUpload.setHash(hash);
+            requestUpload.setHashAlgorithm(contentHasher.getAlgorithm());
+        }
+    }
+
     public List<DfsFile> getFileListFromServer(String directory) {
         String url = metaNodeUrl + "/metadata/file/list"; // Adjusted to match the metanode endpoint
 
         // Creating a RequestDirectory object with the specified directory
         RequestDirectory requestDirectory = new RequestDirectory(directory);
+        List<DfsFile> cached = listingCache.get(directory, requestDirectory.getOwner());
+        if (cached != null) {
+            return cached;
+        }
         HttpEntity<RequestDirectory> requestEntity = new HttpEntity<>(requestDirectory);
 
         try {
-            ResponseEntity<DfsFile[]> response = restTemplate.exchange(
-                url, HttpMethod.POST, requestEntity, DfsFile[].class
-            );
+            ResponseEntity<DfsFile[]> response = metadataCalls.read("list",
+                () -> transferMetrics.record("list", url, () -> restTemplate.exchange(
+                    url, HttpMethod.POST, requestEntity, DfsFile[].class
+                )));
 
             // Check for success and return the body
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return Arrays.asList(response.getBody());
+                List<DfsFile> files = Arrays.asList(response.getBody());
+                listingCache.put(directory, requestDirectory.getOwner(), files);
+                return files;
             } else {
                 logger.error("Failed to fetch file list from server. Status: {}", response.getStatusCode());
                 throw new RuntimeException("Failed to fetch file list from server.");
@@ -216,37 +1173,303 @@ public class FileClientService {
         }
     }
 
-    public void downloadFileFromServer(String fileName) {
-        String url = "http://localhost:8080/dfs/getfile/" + fileName;
-        RestTemplate restTemplate = new RestTemplate();
+    /**
+     * Looks up one file of a directory. A cached listing is used when there is one;
+     * otherwise the listing is streamed and parsed only up to the file, so a lookup in a
+     * huge directory neither loads nor caches the whole listing.
+     *
+     * @return the file's listing entry, or null when the directory has no such file
+     */
+    public DfsFile findFileInListing(String directory, String name) {
+        RequestDirectory requestDirectory = new RequestDirectory(directory);
+        List<DfsFile> cached = listingCache.get(directory, requestDirectory.getOwner());
+        if (cached != null) {
+            return cached.stream().filter(file -> name.equals(file.getName())).findFirst().orElse(null);
+        }
+        return metadataCalls.read("list", () -> streamFileListFromServer(directory,
+                stream -> stream.filter(file -> name.equals(file.getName())).findFirst().orElse(null)));
+    }
+
+    /**
+     * Returns one page of a directory listing. The metanode is asked for just that page
+     * through /metadata/file/list/page; when it has no such endpoint the full listing is
+     * streamed and parsed only up to the end of the page, so memory use depends on the
+     * page size rather than the directory size.
+     */
+    public FileListPage getFileListPage(String directory, int page, int size) {
+        RequestDirectory requestDirectory = new RequestDirectory(directory);
+        String variant = "page=" + page + ",size=" + size;
+        List<DfsFile> files = listingCache.get(directory, requestDirectory.getOwner(), variant);
+        if (files == null) {
+            // One extra entry tells whether a next page exists
+            long offset = (long) page * size;
+            files = fetchFileListRange(requestDirectory, offset, size + 1);
+            listingCache.put(directory, requestDirectory.getOwner(), variant, files);
+        }
+        boolean hasNext = files.size() > size;
+        return new FileListPage(directory, page, size, hasNext ? files.subList(0, size) : files, hasNext);
+    }
+
+    private List<DfsFile> fetchFileListRange(RequestDirectory requestDirectory, long offset, int limit) {
+        if (pagedListingSupported) {
+            requestDirectory.setOffset(offset);
+            requestDirectory.setLimit(limit);
+            try {
+                return metadataCalls.read("list-page", () -> streamFileList(
+                        metaNodeUrl + "/metadata/file/list/page", requestDirectory, stream -> stream.toList()));
+            } catch (HttpClientErrorException.NotFound | HttpClientErrorException.MethodNotAllowed e) {
+                logger.warn("Metanode does not support paged listings, falling back to streaming the full listing.");
+                pagedListingSupported = false;
+            } finally {
+                requestDirectory.setOffset(null);
+                requestDirectory.setLimit(null);
+            }
+        }
+        return metadataCalls.read("list", () -> streamFileListFromServer(
+                requestDirectory.getDirectory(), stream -> stream.skip(offset).limit(limit).toList()));
+    }
+
+    /**
+     * Streams the listing of a directory through the handler. Entries are parsed one at
+     * a time with a Jackson JsonParser as the response arrives. The stream is only valid
+     * inside the handler.
+     */
+    public <T> T streamFileListFromServer(String directory, Function<Stream<DfsFile>, T> handler) {
+        try {
+            return streamFileList(metaNodeUrl + "/metadata/file/list", new RequestDirectory(directory), handler);
+        } catch (RestClientException | UncheckedIOException e) {
+            logger.error("Exception while fetching file list from server: {}", e.getMessage());
+            throw new RuntimeException("Error occurred while retrieving file list.", e);
+        }
+    }
+
+    private <T> T streamFileList(String url, RequestDirectory requestDirectory, Function<Stream<DfsFile>, T> handler) {
+        return transferMetrics.record("list", url, () -> restTemplate.execute(url, HttpMethod.POST,
+            restTemplate.httpEntityCallback(new HttpEntity<>(requestDirectory), DfsFile[].class),
+            response -> {
+                try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+                    Iterator<DfsFile> files = new DfsFileJsonIterator(parser, objectMapper);
+                    return handler.apply(StreamSupport.stream(
+                            Spliterators.spliteratorUnknownSize(files, Spliterator.ORDERED | Spliterator.NONNULL), false));
+                }
+            }));
+    }
+
+    public long downloadFileFromServer(String fileName) {
+        return downloadFileFromServer(fileName, TransferProgressListener.NONE);
+    }
+
+    /**
+     * Streams the file from the server straight into a FileChannel under download.dir.
+     * The body is never materialized as a byte[], so heap use stays fixed regardless
+     * of the file size. Data is written to a ".part" file first; if one is left over
+     * from an interrupted download, only the missing tail is requested with a Range
+     * header.
+     *
+     * @return number of bytes in the downloaded file
+     */
+    public long downloadFileFromServer(String fileName, TransferProgressListener listener) {
+        return downloadFileFromServer(fileName, null, listener);
+    }
+
+    /**
+     * Like {@link #downloadFileFromServer(String, TransferProgressListener)}, but with the
+     * listing metadata the file is first looked up in the block cache by its hash, and a
+     * download whose content matches the hash is added to the cache.
+     *
+     * @param metadata DfsFile from the metanode listing, or null when not known
+     */
+    public long downloadFileFromServer(String fileName, DfsFile metadata, TransferProgressListener listener) {
+        if (metadata != null && metadata.getContainer() != null) {
+            return downloadPackedFile(metadata, listener);
+        }
+        String url = metaNodeUrl + "/dfs/getfile/" + fileName;
+
+        // Path to save the file
+        File downloadDir = new File(downloadRoot);
+        if (!downloadDir.exists()) {
+            downloadDir.mkdirs(); // Create the directory if it doesn't exist
+        }
+        Path outputPath = new File(downloadDir, fileName).toPath();
+        Path partPath = outputPath.resolveSibling(fileName + ".part");
+        String fileHash = metadata != null ? metadata.getHash() : null;
+        if (metadata != null && blockCache.readFile(fileHash, metadata.getSize(), outputPath)) {
+            listener.onProgress(metadata.getSize(), metadata.getSize());
+            logger.info("File served from the block cache: {} ({} bytes)", outputPath, metadata.getSize());
+            return metadata.getSize();
+        }
 
         try {
-            // Fetch the response as a byte array
-            ResponseEntity<byte[]> responseEntity = restTemplate.getForEntity(url, byte[].class);
-
-            if (responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() != null) {
-                // Path to save the file
-                File downloadDir = new File(downloadRoot);
-                if (!downloadDir.exists()) {
-                    downloadDir.mkdirs(); // Create the directory if it doesn't exist
+            Long written;
+            try {
+                written = downloadToPart(url, partPath, listener);
+            } catch (HttpClientErrorException | WebClientResponseException e) {
+                HttpStatusCode status = e instanceof HttpClientErrorException
+                        ? ((HttpClientErrorException) e).getStatusCode() : ((WebClientResponseException) e).getStatusCode();
+                if (status != HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE) {
+                    throw e;
+                }
+                // The leftover part no longer matches the remote file, start over
+                Files.deleteIfExists(partPath);
+                written = downloadToPart(url, partPath, listener);
+            }
+            if (fileHash != null && blockCache.isEnabled()) {
+                String actual = contentHasher.hash(partPath);
+                if (fileHash.equals(actual)) {
+                    blockCache.put(fileHash, partPath);
+                } else {
+                    // Kept as before, but content that does not match its listing is never cached
+                    logger.warn("Downloaded {} does not match its listed hash {}, not caching it", fileName, fileHash);
                 }
+            }
+            Files.move(partPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("File saved successfully: {} ({} bytes)", outputPath, written);
+            return written != null ? written : 0;
+        } catch (RestClientException | WebClientException | IOException e) {
+            logger.error("Error fetching file from server: {}", e.getMessage());
+            throw new RuntimeException("Failed to download file " + fileName + ": " + e.getMessage(), e);
+        }
+    }
 
-                File outputFile = new File(downloadDir, fileName);
-                
-                // Save byte[] to file
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    fos.write(responseEntity.getBody());
-                    fos.flush();
-                    System.out.println("File saved successfully: " + outputFile.getAbsolutePath());
-                } catch (IOException e) {
-                    System.err.println("Error writing file: " + e.getMessage());
+    private Long downloadToPart(String url, Path partPath, TransferProgressListener listener) throws IOException {
+        long existing = Files.exists(partPath) ? Files.size(partPath) : 0;
+        if (reactiveTransferClient != null) {
+            try {
+                return transferMetrics.record("download", url, () -> {
+                    try {
+                        return reactiveTransferClient.downloadBlocking(url, partPath, existing, listener);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return transferMetrics.record("download", url, () -> restTemplate.execute(url, HttpMethod.GET,
+            request -> {
+                if (existing > 0) {
+                    request.getHeaders().set(HttpHeaders.RANGE, "bytes=" + existing + "-");
+                    // Offsets count raw bytes, so the resumed tail must not be content-encoded
+                    request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "identity");
                 }
-            } else {
-                System.err.println("Failed to download the file. HTTP Status: " + responseEntity.getStatusCode());
+            },
+            response -> {
+                // A 200 means the server ignored the range, so the part is rewritten from the start
+                long offset = response.getStatusCode() == HttpStatus.PARTIAL_CONTENT ? existing : 0;
+                long length = response.getHeaders().getContentLength();
+                long expected = length < 0 ? -1 : offset + length;
+                if (offset > 0) {
+                    logger.info("Resuming download of {} at byte {}", url, offset);
+                }
+                try (ReadableByteChannel in = Channels.newChannel(response.getBody());
+                     FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    out.truncate(offset);
+                    long copied = TransferUtils.copyToChannel(in, out, offset, expected,
+                            (transferred, total) -> listener.onProgress(offset + transferred, total));
+                    transferMetrics.recordBytes("download", url, copied);
+                    return offset + copied;
+                }
+            }));
+    }
+
+    /**
+     * Downloads the file as parallel byte ranges instead of one sequential GET. When
+     * metadata is given its size avoids a HEAD request, and its hash and block hashes
+     * are used to verify the result.
+     *
+     * @param metadata DfsFile from the metanode listing, or null when not known
+     * @return number of bytes written
+     */
+    public long downloadFileInParallel(String fileName, DfsFile metadata, TransferProgressListener listener) {
+        if (metadata != null && metadata.getContainer() != null) {
+            return downloadPackedFile(metadata, listener); // One small range, nothing to parallelize
+        }
+        String url = metaNodeUrl + "/dfs/getfile/" + fileName;
+
+        File downloadDir = new File(downloadRoot);
+        if (!downloadDir.exists()) {
+            downloadDir.mkdirs(); // Create the directory if it doesn't exist
+        }
+        Path outputPath = new File(downloadDir, fileName).toPath();
+
+        try {
+            long written = rangeDownloader.download(url, outputPath, metadata, listener);
+            logger.info("File saved successfully: {} ({} bytes)", outputPath, written);
+            return written;
+        } catch (IOException | RestClientException e) {
+            logger.error("Error fetching file from server: {}", e.getMessage());
+            throw new RuntimeException("Failed to download file " + fileName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Extracts a file that was packed into a container: its bytes are fetched with one
+     * Range request for the offset and length in its metadata, checked against its
+     * hash and saved under download.dir by its own name.
+     *
+     * @return number of bytes written
+     */
+    public long downloadPackedFile(DfsFile metadata, TransferProgressListener listener) {
+        if (metadata.getContainer() == null) {
+            throw new IllegalArgumentException(metadata.getName() + " is not packed in a container");
+        }
+        String url = metaNodeUrl + "/dfs/getfile/" + metadata.getContainer();
+        long start = metadata.getOffset();
+        long length = metadata.getSize();
+
+        File downloadDir = new File(downloadRoot);
+        if (!downloadDir.exists()) {
+            downloadDir.mkdirs(); // Create the directory if it doesn't exist
+        }
+        Path outputPath = new File(downloadDir, metadata.getName()).toPath();
+        if (blockCache.readFile(metadata.getHash(), length, outputPath)) {
+            listener.onProgress(length, length);
+            return length;
+        }
+        Path partPath = outputPath.resolveSibling(metadata.getName() + ".part");
+
+        try {
+            Long written = transferMetrics.record("download-packed", url, () -> restTemplate.execute(url, HttpMethod.GET,
+                request -> {
+                    request.getHeaders().set(HttpHeaders.RANGE, "bytes=" + start + "-" + (start + length - 1));
+                    request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "identity");
+                },
+                response -> {
+                    if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+                        // A full container body would have to be skipped through to reach the file
+                        throw new IOException("Server ignored the Range header (status " + response.getStatusCode() + ")");
+                    }
+                    try (ReadableByteChannel in = Channels.newChannel(response.getBody());
+                         FileChannel out = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                 StandardOpenOption.TRUNCATE_EXISTING)) {
+                        long copied = TransferUtils.copyToChannel(in, out, 0, length, listener);
+                        transferMetrics.recordBytes("download", url, copied);
+                        return copied;
+                    }
+                }));
+            if (written == null || written != length) {
+                throw new IOException("Expected " + length + " bytes of " + metadata.getName() + " but got " + written);
             }
-        } catch (Exception e) {
-            System.err.println("Error fetching file from server: " + e.getMessage());
-            e.printStackTrace();
+            if (metadata.getHash() != null) {
+                String actual = contentHasher.hash(partPath);
+                if (!actual.equals(metadata.getHash())) {
+                    throw new IOException("Hash mismatch for " + metadata.getName() + ": expected "
+                            + metadata.getHash() + " but was " + actual);
+                }
+                blockCache.put(metadata.getHash(), partPath);
+            }
+            Files.move(partPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+            logger.info("File extracted from container {}: {} ({} bytes)", metadata.getContainer(), outputPath, length);
+            return length;
+        } catch (RestClientException | IOException e) {
+            try {
+                Files.deleteIfExists(partPath);
+            } catch (IOException ignored) {
+                // Overwritten by the next attempt
+            }
+            logger.error("Error extracting {} from {}: {}", metadata.getName(), metadata.getContainer(), e.getMessage());
+            throw new RuntimeException("Failed to download file " + metadata.getName() + ": " + e.getMessage(), e);
         }
     }
 
@@ -256,6 +1479,8 @@ public class FileClientService {
         private String filename; // Filename to upload
         private String targetDir;
         private String owner;
+        private String hash; // Content hash, lets the metanode report known content as existing
+        private String hashAlgorithm;
         
         public RequestUpload() {}
 
@@ -272,6 +1497,10 @@ public class FileClientService {
 		public void setTargetDir(String targetDir) 	{			this.targetDir = targetDir;		}
 		public String getOwner() 					{			return owner;		}
 		public void setOwner(String owner) 			{			this.owner = owner;		}
+		public String getHash() 					{			return hash;		}
+		public void setHash(String hash) 			{			this.hash = hash;		}
+		public String getHashAlgorithm() 			{			return hashAlgorithm;		}
+		public void setHashAlgorithm(String hashAlgorithm) {	this.hashAlgorithm = hashAlgorithm;	}
     }
 
     // Inner class to represent the response for file check
@@ -279,28 +1508,78 @@ public class FileClientService {
     public static class UploadResponse {
         private boolean exists; // Flag indicating whether the file exists
         private String nodeUrl; // URL of the selected node
+        private List<String> candidates; // Alternate node URLs, optional
         
         public UploadResponse() {
         	this.exists = false;
         	this.nodeUrl = "";
         }
 
+        public UploadResponse(boolean exists, String nodeUrl) {
+            this(exists, nodeUrl, null);
+        }
+
         // Constructor with @JsonCreator for Jackson
         @JsonCreator
-        public UploadResponse(@JsonProperty("exists") boolean exists, @JsonProperty("nodeUrl") String nodeUrl) {
+        public UploadResponse(@JsonProperty("exists") boolean exists, @JsonProperty("nodeUrl") String nodeUrl,
+                              @JsonProperty("candidates") List<String> candidates) {
             this.exists = exists;
             this.nodeUrl = nodeUrl;
+            this.candidates = candidates;
         }
 
         public boolean isExists() {            return exists;        }
         public String getNodeUrl() {            return nodeUrl;        }
+        public List<String> getCandidates() {            return candidates;        }
+
+        /**
+         * The selected node followed by the candidates, without duplicates.
+         */
+        @JsonIgnore
+        public List<String> getNodeUrls() {
+            List<String> urls = new ArrayList<>();
+            urls.add(nodeUrl);
+            if (candidates != null) {
+                candidates.stream().filter(url -> url != null && !urls.contains(url)).forEach(urls::add);
+            }
+            return urls;
+        }
     }
+    // Inner class to represent a batch of upload requests resolved in one call
+    public static class RequestUploadBatch {
+        private List<RequestUpload> requests;
+
+        public RequestUploadBatch() {}
+        public RequestUploadBatch(List<RequestUpload> requests) {
+            this.requests = requests;
+        }
+
+        public List<RequestUpload> getRequests() 				{            return requests;        }
+        public void setRequests(List<RequestUpload> requests) 	{            this.requests = requests;        }
+    }
+
+    // Inner class to represent the batch response, one UploadResponse per request in the same order
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class UploadBatchResponse {
+        private List<UploadResponse> responses;
+
+        public UploadBatchResponse() {}
+        public UploadBatchResponse(List<UploadResponse> responses) {
+            this.responses = responses;
+        }
+
+        public List<UploadResponse> getResponses() 					{            return responses;        }
+        public void setResponses(List<UploadResponse> responses) 	{            this.responses = responses;        }
+    }
+
     /**
      * Inner class to represent a request containing the directory.
      */
     public static class RequestDirectory {
         private String directory;
         private String owner;
+        private Long offset; // Paged listings only
+        private Integer limit;
         public RequestDirectory() {}
         public RequestDirectory(String dir) {
         	this.directory = dir;
@@ -311,6 +1590,10 @@ public class FileClientService {
         public void setDirectory(String directory) 	{            this.directory = directory;        }
 		public String getOwner() 					{			return owner;		}
 		public void setOwner(String owner) 			{			this.owner = owner;		}
+		public Long getOffset() 					{			return offset;		}
+		public void setOffset(Long offset) 			{			this.offset = offset;		}
+		public Integer getLimit() 					{			return limit;		}
+		public void setLimit(Integer limit) 		{			this.limit = limit;		}
     }
 
 }
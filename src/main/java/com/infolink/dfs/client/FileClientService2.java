@@ -188,7 +188,6 @@ public class FileClientService2 {
 
     public void downloadFileFromServer(String fileName) {
         String url = "http://localhost:8080/dfs/getfile/" + fileName;
-        RestTemplate restTemplate = new RestTemplate();
 
         try {
             // Fetch the response as a byte array
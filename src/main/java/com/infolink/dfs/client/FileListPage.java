@@ -0,0 +1,31 @@
+package com.infolink.dfs.client;
+
+import java.util.List;
+
+import com.infolink.dfs.shared.DfsFile;
+
+/**
+ * One page of a directory listing.
+ */
+public class FileListPage {
+    private final String directory;
+    private final int page;
+    private final int size;
+    private final List<DfsFile> files;
+    private final boolean hasNext;
+
+    public FileListPage(String directory, int page, int size, List<DfsFile> files, boolean hasNext) {
+        this.directory = directory;
+        this.page = page;
+        this.size = size;
+        this.files = files;
+        this.hasNext = hasNext;
+    }
+
+    public String getDirectory() 		{        return directory;    }
+    public int getPage() 				{        return page;    }
+    public int getSize() 				{        return size;    }
+    public List<DfsFile> getFiles() 	{        return files;    }
+    public boolean isHasNext() 			{        return hasNext;    }
+    public boolean isHasPrevious() 		{        return page > 0;    }
+}
@@ -0,0 +1,77 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * Resource over a byte range of a file. The range is read with positional
+ * FileChannel reads while the request body is written, so sending a block never
+ * copies the whole block onto the heap.
+ */
+class FileRegionResource extends AbstractResource {
+    private final Path path;
+    private final long offset;
+    private final long length;
+    private final String filename;
+
+    FileRegionResource(Path path, long offset, long length, String filename) {
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+        this.filename = filename;
+    }
+
+    @Override
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public String getDescription() {
+        return "region [" + offset + ", " + (offset + length) + ") of " + path;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new InputStream() {
+            private long position = offset;
+            private final long end = offset + length;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position >= end) {
+                    return -1;
+                }
+                int toRead = (int) Math.min(len, end - position);
+                int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
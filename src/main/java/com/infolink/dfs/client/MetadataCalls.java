@@ -0,0 +1,207 @@
+package com.infolink.dfs.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs idempotent metanode calls with retries and, for reads, optional hedging.
+ * <p>
+ * A call that fails with a transient error (connection failure, timeout, 5xx, 429)
+ * is retried following the metanode.retry policy; any other error is thrown at once.
+ * With metanode.hedge.enabled a read that has not answered within the recent
+ * percentile latency of its operation gets a second, identical request, and whichever
+ * answers first wins. The loser is left to finish and its result dropped. This trims
+ * the tail caused by a metanode GC pause for the price of a few percent more requests.
+ */
+@Component
+public class MetadataCalls {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataCalls.class);
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_SAMPLES = 20; // No hedging until the percentile means something
+
+    @Value("${metanode.retry.max-attempts:3}")
+    private int maxAttempts;
+    @Value("${metanode.retry.initial-backoff:100ms}")
+    private Duration initialBackoff;
+    @Value("${metanode.retry.max-backoff:2s}")
+    private Duration maxBackoff;
+    @Value("${metanode.retry.multiplier:2.0}")
+    private double multiplier;
+    @Value("${metanode.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+    @Value("${metanode.hedge.percentile:0.95}")
+    private double hedgePercentile;
+    @Value("${metanode.hedge.min-delay:10ms}")
+    private Duration minHedgeDelay;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private RetryPolicy retryPolicy;
+    private ExecutorService hedgeExecutor;
+
+    public MetadataCalls(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+    	this.retryPolicy = new RetryPolicy(maxAttempts, initialBackoff, maxBackoff, multiplier);
+    	if (hedgeEnabled) {
+    		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("dfs-hedge-");
+    		threadFactory.setDaemon(true);
+    		this.hedgeExecutor = Executors.newCachedThreadPool(threadFactory);
+    	}
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	if (hedgeExecutor != null) {
+    		hedgeExecutor.shutdownNow();
+    	}
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Runs an idempotent call, retrying transient failures.
+     */
+    public <T> T retry(String operation, Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt >= retryPolicy.getMaxAttempts() || !NodeRegistry.isNodeFailure(e)) {
+                    throw e;
+                }
+                Duration backoff = retryPolicy.backoff(attempt);
+                logger.warn("Metanode call {} failed (attempt {}/{}), retrying in {}ms: {}",
+                        operation, attempt, retryPolicy.getMaxAttempts(), backoff.toMillis(), e.getMessage());
+                count("dfs.client.retries", "Retried metanode calls", operation);
+                try {
+                    Thread.sleep(backoff.toMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a read: retried like {@link #retry}, and each attempt hedged when hedging is
+     * enabled. The call must be safe to run twice concurrently.
+     */
+    public <T> T read(String operation, Supplier<T> call) {
+        return retry(operation, () -> hedged(operation, call));
+    }
+
+    private <T> T hedged(String operation, Supplier<T> call) {
+        LatencyWindow window = latencies.computeIfAbsent(operation, op -> new LatencyWindow());
+        Duration delay = hedgeEnabled ? window.hedgeDelay() : null;
+        if (delay == null) {
+            return window.timed(call);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger launched = new AtomicInteger(1);
+        AtomicInteger failed = new AtomicInteger();
+        hedgeExecutor.execute(() -> attempt(window, call, result, launched, failed));
+        try {
+            try {
+                return result.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.debug("Metanode call {} slower than {}ms, sending a hedged request", operation, delay.toMillis());
+                count("dfs.client.hedges", "Hedged metanode requests", operation);
+                launched.incrementAndGet();
+                hedgeExecutor.execute(() -> attempt(window, call, result, launched, failed));
+                return result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for metanode call " + operation, e);
+        }
+    }
+
+    private <T> void attempt(LatencyWindow window, Supplier<T> call, CompletableFuture<T> result,
+                             AtomicInteger launched, AtomicInteger failed) {
+        try {
+            result.complete(window.timed(call));
+        } catch (RuntimeException e) {
+            // Only fail once every request sent so far has failed
+            if (failed.incrementAndGet() >= launched.get()) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void count(String name, String description, String operation) {
+        Counter.builder(name)
+                .description(description)
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Latencies of the last successful calls of one operation.
+     */
+    private class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW];
+        private int count;
+        private int next;
+
+        <T> T timed(Supplier<T> call) {
+            long start = System.nanoTime();
+            T value = call.get();
+            add(System.nanoTime() - start);
+            return value;
+        }
+
+        private synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return the hedge-percentile latency, or null while there are too few samples
+         */
+        synchronized Duration hedgeDelay() {
+            if (count < MIN_SAMPLES) {
+                return null;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = Math.min(count - 1, (int) Math.ceil(hedgePercentile * count) - 1);
+            Duration delay = Duration.ofNanos(sorted[Math.max(0, index)]);
+            return delay.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : delay;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+/**
+ * Client-side view of the data nodes. For every node (host:port) it keeps an EWMA of
+ * the latency of successful calls, an EWMA of the error rate and the number of calls
+ * in flight, and runs a circuit breaker: failure-threshold consecutive failures open
+ * the circuit for open-duration, after which a single probe call decides whether it
+ * closes again.
+ * <p>
+ * When the metanode offers several candidate nodes for an upload, they are tried in
+ * order of score (latency x load, inflated by the error rate) and the next one is
+ * taken when a node fails with a connection error, a timeout or a 5xx/429. Nodes with
+ * an open circuit are skipped, so a slow or dead node stops taking new uploads
+ * instead of stalling a share of every directory upload.
+ */
+@Component
+public class NodeRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(NodeRegistry.class);
+
+    @Value("${node.ewma.alpha:0.2}")
+    private double alpha; // Weight of the newest sample
+    @Value("${node.circuit.failure-threshold:5}")
+    private int failureThreshold; // Consecutive failures that open the circuit
+    @Value("${node.circuit.open-duration:30s}")
+    private Duration openDuration;
+    @Value("${node.failover.max-attempts:3}")
+    private int maxAttempts; // Nodes tried per call
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, NodeStats> nodes = new ConcurrentHashMap<>();
+
+    public NodeRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the call against the best of the given node URLs, failing over to the next
+     * one when a node fails.
+     *
+     * @throws RuntimeException the last node failure, or the error of a call that
+     *         failed for a reason the node is not responsible for
+     */
+    public <T> T execute(List<String> urls, Function<String, T> call) {
+        Iterator<String> ranked = rank(urls).iterator();
+        RuntimeException last = null;
+        int attempts = 0;
+        while (ranked.hasNext() && attempts < maxAttempts) {
+            String url = ranked.next();
+            NodeStats node = stats(url);
+            if (!node.tryAcquire()) {
+                continue;
+            }
+            attempts++;
+            long start = System.nanoTime();
+            node.begin();
+            try {
+                T result = call.apply(url);
+                node.success(System.nanoTime() - start);
+                return result;
+            } catch (RuntimeException e) {
+                if (isSourceFailure(e)) {
+                    node.release();
+                    throw e;
+                }
+                if (!isNodeFailure(e)) {
+                    node.success(System.nanoTime() - start); // The node answered
+                    throw e;
+                }
+                node.failure();
+                logFailure(url, e, ranked.hasNext() && attempts < maxAttempts);
+                last = e;
+            }
+        }
+        throw last != null ? last : unavailable(urls);
+    }
+
+    /**
+     * Reactive form of {@link #execute}; the next node is tried when the Mono of the
+     * previous one fails.
+     */
+    public <T> Mono<T> executeAsync(List<String> urls, Function<String, Mono<T>> call) {
+        return Mono.defer(() -> attemptAsync(urls, rank(urls).iterator(), 0, call, null));
+    }
+
+    private <T> Mono<T> attemptAsync(List<String> urls, Iterator<String> ranked, int attempts,
+                                     Function<String, Mono<T>> call, Throwable last) {
+        while (ranked.hasNext() && attempts < maxAttempts) {
+            String url = ranked.next();
+            NodeStats node = stats(url);
+            if (!node.tryAcquire()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            node.begin();
+            return call.apply(url)
+                    .doOnSuccess(result -> node.success(System.nanoTime() - start))
+                    .doOnCancel(node::release)
+                    .onErrorResume(e -> {
+                        if (isSourceFailure(e)) {
+                            node.release();
+                            return Mono.error(e);
+                        }
+                        if (!isNodeFailure(e)) {
+                            node.success(System.nanoTime() - start);
+                            return Mono.error(e);
+                        }
+                        node.failure();
+                        logFailure(url, e, ranked.hasNext() && attempts + 1 < maxAttempts);
+                        return attemptAsync(urls, ranked, attempts + 1, call, e);
+                    });
+        }
+        return Mono.error(last != null ? last : unavailable(urls));
+    }
+
+    /**
+     * Orders the URLs best first: nodes that can take a call by ascending score, then
+     * nodes with an open circuit. Ties keep the metanode's order, so a node that has
+     * not been measured yet is tried where the metanode placed it.
+     */
+    List<String> rank(List<String> urls) {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String url : new LinkedHashSet<>(urls)) {
+            NodeStats node = stats(url);
+            candidates.add(new Candidate(url, node.isAvailable(), node.score()));
+        }
+        candidates.sort(Comparator.comparing((Candidate c) -> !c.available).thenComparingDouble(c -> c.score));
+        return candidates.stream().map(c -> c.url).toList();
+    }
+
+    /**
+     * True when the failure says something about the node: it could not be reached,
+     * timed out, or answered with a 5xx or 429. Other client errors are the request's
+     * fault, and a SourceReadException anywhere in the chain means the content being
+     * sent could not be read; neither is counted nor failed over.
+     */
+    static boolean isNodeFailure(Throwable e) {
+        if (isSourceFailure(e)) {
+            return false; // Usually wrapped in a ResourceAccessException, so checked first
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpStatusCodeException) {
+                return isNodeStatus(((HttpStatusCodeException) t).getStatusCode().value());
+            }
+            if (t instanceof WebClientResponseException) {
+                return isNodeStatus(((WebClientResponseException) t).getStatusCode().value());
+            }
+            if (t instanceof ResourceAccessException || t instanceof WebClientRequestException || t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True when the content being sent could not be read, which says nothing about the
+     * node: the call neither counts as a failure nor yields a latency sample.
+     */
+    static boolean isSourceFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SourceReadException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNodeStatus(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    private void logFailure(String url, Throwable e, boolean failingOver) {
+        if (failingOver) {
+            logger.warn("Node {} failed ({}), failing over to the next candidate", TransferMetrics.node(url), e.getMessage());
+        } else {
+            logger.warn("Node {} failed ({})", TransferMetrics.node(url), e.getMessage());
+        }
+    }
+
+    private RuntimeException unavailable(List<String> urls) {
+        return new RuntimeException("No data node available, circuit open for: "
+                + urls.stream().map(TransferMetrics::node).distinct().toList());
+    }
+
+    NodeStats stats(String url) {
+        return nodes.computeIfAbsent(TransferMetrics.node(url), this::register);
+    }
+
+    private NodeStats register(String node) {
+        NodeStats stats = new NodeStats(node);
+        Gauge.builder("dfs.client.node.latency", stats, NodeStats::getLatencyMillis)
+                .description("EWMA of the latency of successful calls to a data node")
+                .baseUnit("milliseconds")
+                .tag("node", node)
+                .register(meterRegistry);
+        Gauge.builder("dfs.client.node.error.rate", stats, NodeStats::getErrorRate)
+                .description("EWMA of the failure rate of calls to a data node")
+                .tag("node", node)
+                .register(meterRegistry);
+        Gauge.builder("dfs.client.node.inflight", stats, NodeStats::getInFlight)
+                .description("Calls currently running against a data node")
+                .tag("node", node)
+                .register(meterRegistry);
+        Gauge.builder("dfs.client.node.circuit.open", stats, s -> s.isAvailable() ? 0 : 1)
+                .description("1 while the circuit of a data node is open")
+                .tag("node", node)
+                .register(meterRegistry);
+        return stats;
+    }
+
+    private static class Candidate {
+        final String url;
+        final boolean available;
+        final double score;
+
+        Candidate(String url, boolean available, double score) {
+            this.url = url;
+            this.available = available;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Health of one node. The EWMAs are updated under the instance lock; they are
+     * cheap and contention is per node.
+     */
+    class NodeStats {
+        private final String node;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private double latencyMillis = -1; // -1 until the first success
+        private double errorRate;
+        private int consecutiveFailures;
+        private volatile long openUntil; // System.nanoTime() deadline, 0 while closed
+
+        NodeStats(String node) {
+            this.node = node;
+        }
+
+        synchronized double getLatencyMillis() 	{        return Math.max(0, latencyMillis);    }
+        synchronized double getErrorRate() 		{        return errorRate;    }
+        int getInFlight() 						{        return inFlight.get();    }
+
+        boolean isAvailable() {
+            return openUntil == 0 || System.nanoTime() - openUntil >= 0;
+        }
+
+        /**
+         * @return false while the circuit is open, or half open with a probe already running
+         */
+        boolean tryAcquire() {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (System.nanoTime() - openUntil < 0) {
+                return false;
+            }
+            return probing.compareAndSet(false, true); // Half open: let one call through
+        }
+
+        void begin() {
+            inFlight.incrementAndGet();
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+            probing.set(false);
+        }
+
+        synchronized void success(long nanos) {
+            double millis = nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            latencyMillis = latencyMillis < 0 ? millis : alpha * millis + (1 - alpha) * latencyMillis;
+            errorRate = (1 - alpha) * errorRate;
+            consecutiveFailures = 0;
+            if (openUntil != 0) {
+                logger.info("Node {} recovered, closing its circuit", node);
+                openUntil = 0;
+            }
+            release();
+        }
+
+        synchronized void failure() {
+            errorRate = alpha + (1 - alpha) * errorRate;
+            consecutiveFailures++;
+            if (probing.get() || consecutiveFailures >= failureThreshold) {
+                if (openUntil == 0) {
+                    logger.warn("Opening circuit of node {} for {} after {} consecutive failures",
+                            node, openDuration, consecutiveFailures);
+                }
+                openUntil = System.nanoTime() + openDuration.toNanos();
+            }
+            release();
+        }
+
+        /**
+         * Lower is better: expected latency scaled by the queue in front of the call and
+         * by the chance of having to retry elsewhere.
+         */
+        synchronized double score() {
+            double latency = Math.max(0, latencyMillis) + 1;
+            return latency * (inFlight.get() + 1) / Math.max(0.05, 1 - errorRate);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.infolink.dfs.client;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Container format that packs many small files into one DFS object. Entries are
+ * written one after another, each as a header (name and length) followed by the raw
+ * bytes, so a container can be read sequentially like a tar file. The index of all
+ * entries follows the last one, and a fixed-size footer points at it:
+ * <pre>
+ *   "DFSPACK1"
+ *   entry*:  u16 name length, name (UTF-8), i64 length, data
+ *   index:   i32 count, count * (u16 name length, name, i64 offset, i64 length, u16 hash length, hash)
+ *   footer:  i64 index offset, "DFSPACKI"
+ * </pre>
+ * Offsets are those of the data, so a single file is extracted with one byte-range
+ * read of the container, which is what its DfsFile records.
+ */
+public final class PackContainer {
+    static final String EXTENSION = ".dfspack";
+    private static final byte[] MAGIC = "DFSPACK1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "DFSPACKI".getBytes(StandardCharsets.US_ASCII);
+    private static final int FOOTER_SIZE = Long.BYTES + 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PackContainer() {}
+
+    /**
+     * One packed file: where its data starts in the container and its content hash.
+     */
+    public static class Entry {
+        private final String name;
+        private final long offset;
+        private final long length;
+        private final String hash;
+
+        Entry(String name, long offset, long length, String hash) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        public String getName() 	{        return name;    }
+        public long getOffset() 	{        return offset;    }
+        public long getLength() 	{        return length;    }
+        public String getHash() 	{        return hash;    }
+    }
+
+    /**
+     * Streams files into a new container file. Not thread-safe.
+     */
+    public static class Writer implements AutoCloseable {
+        private final Path path;
+        private final DataOutputStream out;
+        private final ContentHasher hasher;
+        private final List<Entry> entries = new ArrayList<>();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private long position;
+        private boolean closed;
+
+        public Writer(Path path, ContentHasher hasher) throws IOException {
+            this.path = path;
+            this.hasher = hasher;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), BUFFER_SIZE));
+            out.write(MAGIC);
+            position = MAGIC.length;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return bytes written so far, index excluded
+         */
+        public long size() {
+            return position;
+        }
+
+        public int getEntryCount() {
+            return entries.size();
+        }
+
+        /**
+         * Copies the file into the container, hashing it on the way.
+         *
+         * @param length the file's size; a file that changed size meanwhile is an error
+         */
+        public Entry add(String name, Path source, long length) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(nameBytes.length);
+            out.write(nameBytes);
+            out.writeLong(length);
+            long offset = position + Short.BYTES + nameBytes.length + Long.BYTES;
+            ContentHasher.Digest digest = hasher.newDigest();
+            long copied = 0;
+            boolean grew;
+            try (InputStream in = Files.newInputStream(source)) {
+                int n;
+                while (copied < length && (n = in.read(buffer, 0, (int) Math.min(buffer.length, length - copied))) != -1) {
+                    out.write(buffer, 0, n);
+                    digest.update(buffer, 0, n);
+                    copied += n;
+                }
+                grew = in.read() != -1;
+            } finally {
+                // The header promised length bytes; padding keeps the container readable
+                for (long pad = copied; pad < length; pad++) {
+                    out.write(0);
+                }
+                position = offset + length;
+            }
+            if (copied != length || grew) {
+                throw new IOException(source + " changed size while being packed"); // Left out of the index
+            }
+            Entry entry = new Entry(name, offset, length, digest.finish());
+            entries.add(entry);
+            return entry;
+        }
+
+        /**
+         * Appends the index and footer and closes the file.
+         *
+         * @return the entries, in container order
+         */
+        public List<Entry> finish() throws IOException {
+            long indexOffset = position;
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeString(out, entry.name);
+                out.writeLong(entry.offset);
+                out.writeLong(entry.length);
+                writeString(out, entry.hash);
+            }
+            out.writeLong(indexOffset);
+            out.write(INDEX_MAGIC);
+            close();
+            return List.copyOf(entries);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the index of a container file from its footer.
+     */
+    public static List<Entry> readIndex(Path container) throws IOException {
+        try (FileChannel channel = FileChannel.open(container, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + Integer.BYTES + FOOTER_SIZE) {
+                throw new IOException(container + " is not a pack container");
+            }
+            ByteBuffer footer = read(channel, size - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            footer.get(magic);
+            if (!Arrays.equals(magic, INDEX_MAGIC) || indexOffset < MAGIC.length || indexOffset > size - FOOTER_SIZE) {
+                throw new IOException(container + " has no valid pack index");
+            }
+            ByteBuffer index = read(channel, indexOffset, (int) (size - FOOTER_SIZE - indexOffset));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()));
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new Entry(readString(in), in.readLong(), in.readLong(), readString(in)));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Copies one entry out of a local container file.
+     */
+    public static void extract(Path container, Entry entry, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(container, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < entry.length) {
+                long n = in.transferTo(entry.offset + copied, entry.length - copied, out);
+                if (n <= 0) {
+                    throw new IOException(container + " ends inside entry " + entry.name);
+                }
+                copied += n;
+            }
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of container");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,244 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.infolink.dfs.shared.DfsFile;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Downloads a file as parallel HTTP byte ranges written at their offsets into a
+ * preallocated file. When the metadata carries block hashes that line up with the
+ * configured block size, the ranges follow the blocks and each one is verified as it
+ * arrives; the whole file is checked against DfsFile.hash at the end.
+ * <p>
+ * Ranges are written to a ".part" file and checkpointed in the transfer journal, so an
+ * interrupted download resumes with only the missing ranges.
+ * <p>
+ * Content already in the {@link BlockCache} is not fetched: a cached whole file is
+ * copied as is, and cached blocks fill their ranges. Verified blocks, or the verified
+ * file when it has no usable block hashes, are added to the cache.
+ */
+@Component
+public class RangeDownloader {
+    private static final Logger logger = LoggerFactory.getLogger(RangeDownloader.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${download.range.size:8MB}")
+    private DataSize rangeSize;
+    @Value("${download.parallelism:4}")
+    private int parallelism;
+    @Value("${download.range.max-attempts:3}")
+    private int maxAttempts;
+    @Autowired
+    private RestTemplate restTemplate;
+    @Autowired
+    private ContentHasher contentHasher;
+    @Autowired
+    private BlockUploader blockUploader;
+    @Autowired
+    private TransferJournal transferJournal;
+    @Autowired
+    private TransferMetrics transferMetrics;
+    @Autowired
+    private BlockCache blockCache;
+    private ExecutorService rangeExecutor;
+
+    @PostConstruct
+    public void postConstruct() {
+    	this.rangeExecutor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("dfs-range-"));
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	rangeExecutor.shutdownNow();
+    }
+
+    /**
+     * @param metadata file metadata for size and hash verification, or null to learn the size with a HEAD request
+     * @return number of bytes written
+     */
+    public long download(String url, Path outputPath, DfsFile metadata, TransferProgressListener listener) throws IOException {
+        long size = metadata != null && metadata.getSize() > 0 ? metadata.getSize() : fetchContentLength(url);
+        if (size < 0) {
+            throw new IOException("Server did not report a size for " + url);
+        }
+
+        String fileHash = metadata != null ? metadata.getHash() : null;
+        if (blockCache.readFile(fileHash, size, outputPath)) {
+            listener.onProgress(size, size);
+            logger.debug("Served {} ({} bytes) from the block cache", outputPath.getFileName(), size);
+            return size;
+        }
+
+        List<String> blockHashes = alignedBlockHashes(metadata, size);
+        long chunk = blockHashes != null ? blockUploader.getBlockSize() : rangeSize.toBytes();
+
+        Path partPath = outputPath.resolveSibling(outputPath.getFileName() + ".part");
+        String journalKey = "D|" + url + "|" + size + "|" + chunk + "|" + (metadata != null ? metadata.getHash() : "");
+        if (!Files.exists(partPath)) {
+            transferJournal.reset(journalKey); // Checkpoints without their part file are useless
+        }
+        Set<Integer> completed = transferJournal.getCompletedBlocks(journalKey);
+        try (RandomAccessFile file = new RandomAccessFile(partPath.toFile(), "rw")) {
+            file.setLength(size); // Preallocate so every range can be written at its offset
+        }
+
+        AtomicLong transferred = new AtomicLong();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        // Readable too, so verified blocks can be copied into the cache
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int index = 0;
+            for (long offset = 0; offset < size; offset += chunk, index++) {
+                long start = offset;
+                long length = Math.min(chunk, size - offset);
+                if (completed.contains(index)) {
+                    transferred.addAndGet(length);
+                    continue;
+                }
+                int rangeIndex = index;
+                String expectedHash = blockHashes != null ? blockHashes.get(index) : null;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    if (blockCache.read(expectedHash, length, channel, start)) {
+                        listener.onProgress(transferred.addAndGet(length), size);
+                    } else {
+                        fetchRange(url, channel, start, length, expectedHash, transferred, size, listener);
+                        blockCache.put(expectedHash, channel, start, length);
+                    }
+                    transferJournal.markBlockCompleted(journalKey, rangeIndex);
+                }, rangeExecutor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            channel.force(false); // Make the data durable before the checkpoints are dropped
+        } catch (CompletionException e) {
+            // The part file and its checkpoints stay behind for the next attempt
+            futures.forEach(future -> future.cancel(false));
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Ranged download of " + url + " failed: " + cause.getMessage(), cause);
+        }
+
+        if (metadata != null && metadata.getHash() != null) {
+            String actual = contentHasher.hash(partPath);
+            if (!actual.equals(metadata.getHash())) {
+                Files.deleteIfExists(partPath);
+                transferJournal.reset(journalKey);
+                throw new IOException("Hash mismatch for " + outputPath.getFileName() + ": expected "
+                        + metadata.getHash() + " but was " + actual);
+            }
+            if (blockHashes == null) {
+                blockCache.put(fileHash, partPath); // Otherwise its blocks are cached already
+            }
+        }
+        Files.move(partPath, outputPath, StandardCopyOption.REPLACE_EXISTING);
+        transferJournal.reset(journalKey);
+        logger.debug("Downloaded {} bytes from {} in {} ranges", size, url, futures.size());
+        return size;
+    }
+
+    private long fetchContentLength(String url) {
+        HttpHeaders headers = restTemplate.headForHeaders(url);
+        return headers.getContentLength();
+    }
+
+    /**
+     * Returns the block hashes when they can be used to verify ranges of the configured
+     * block size, otherwise null.
+     */
+    private List<String> alignedBlockHashes(DfsFile metadata, long size) {
+        if (metadata == null || metadata.getBlockHashes() == null || metadata.getBlockHashes().isEmpty()) {
+            return null;
+        }
+        long blockBytes = blockUploader.getBlockSize();
+        long expectedBlocks = Math.max(1, (size + blockBytes - 1) / blockBytes);
+        return metadata.getBlockHashes().size() == expectedBlocks ? metadata.getBlockHashes() : null;
+    }
+
+    private void fetchRange(String url, FileChannel channel, long start, long length, String expectedHash,
+                            AtomicLong transferred, long total, TransferProgressListener listener) {
+        for (int attempt = 1; ; attempt++) {
+            AtomicLong attemptBytes = new AtomicLong();
+            try {
+                String actualHash = transferMetrics.record("download-range", url, () -> restTemplate.execute(url, HttpMethod.GET,
+                        request -> {
+                            request.getHeaders().set(HttpHeaders.RANGE, "bytes=" + start + "-" + (start + length - 1));
+                            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "identity");
+                        },
+                        response -> {
+                            if (response.getStatusCode() != HttpStatus.PARTIAL_CONTENT && !(start == 0 && length == total)) {
+                                throw new IOException("Server ignored the Range header (status " + response.getStatusCode() + ")");
+                            }
+                            return writeRange(response.getBody(), channel, start, length, expectedHash != null,
+                                    attemptBytes, transferred, total, listener);
+                        }));
+                transferMetrics.recordBytes("download", url, attemptBytes.get());
+                if (expectedHash != null && !expectedHash.equals(actualHash)) {
+                    throw new IOException("Block at offset " + start + " failed verification");
+                }
+                return;
+            } catch (RestClientException | IOException e) {
+                transferred.addAndGet(-attemptBytes.get()); // The retry rewrites this range from the start
+                if (attempt >= maxAttempts) {
+                    throw new CompletionException(e);
+                }
+                logger.warn("Range at offset {} of {} failed (attempt {}/{}): {}", start, url, attempt, maxAttempts, e.getMessage());
+            }
+        }
+    }
+
+    private String writeRange(InputStream in, FileChannel channel, long start, long length, boolean hashRange,
+                              AtomicLong attemptBytes, AtomicLong transferred, long total,
+                              TransferProgressListener listener) throws IOException {
+        ContentHasher.Digest digest = hashRange ? contentHasher.newDigest() : null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = start;
+        long end = start + length;
+        int n;
+        while (position < end && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) != -1) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+            long at = position;
+            while (byteBuffer.hasRemaining()) {
+                at += channel.write(byteBuffer, at);
+            }
+            if (digest != null) {
+                digest.update(buffer, 0, n);
+            }
+            position += n;
+            attemptBytes.addAndGet(n);
+            listener.onProgress(transferred.addAndGet(n), total);
+        }
+        if (position != end) {
+            throw new IOException("Range at offset " + start + " ended after " + (position - start) + " of " + length + " bytes");
+        }
+        return digest != null ? digest.finish() : null;
+    }
+}
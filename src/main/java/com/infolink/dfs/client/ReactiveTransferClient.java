@@ -0,0 +1,183 @@
+package com.infolink.dfs.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Non-blocking transfer backend on WebClient and Reactor Netty, enabled with
+ * transfer.backend=webclient. File bodies are streamed as Flux&lt;DataBuffer&gt;
+ * between the network and an AsynchronousFileChannel; the file channel requests the
+ * next buffer only after the previous one is written, so a slow disk or a slow node
+ * applies backpressure instead of buffering. A transfer holds no thread while it
+ * waits on I/O, so the number of concurrent transfers is bounded by
+ * upload.parallel.max-in-flight and the connection pool, not by a thread pool.
+ */
+@Component
+@ConditionalOnProperty(name = "transfer.backend", havingValue = "webclient")
+public class ReactiveTransferClient {
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveTransferClient.class);
+
+    @Value("${transfer.webclient.buffer-size:64KB}")
+    private DataSize bufferSize;
+
+    @Autowired
+    private TransferMetrics transferMetrics;
+
+    private final WebClient webClient;
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    public ReactiveTransferClient(WebClient.Builder builder,
+                                  @Value("${transfer.webclient.max-connections:1000}") int maxConnections,
+                                  @Value("${transfer.webclient.pending-acquire-timeout:10m}") Duration pendingAcquireTimeout,
+                                  @Value("${http.client.connect-timeout:5s}") Duration connectTimeout,
+                                  @Value("${http.client.read-timeout:60s}") Duration readTimeout) {
+        ConnectionProvider provider = ConnectionProvider.builder("dfs-transfer")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1) // Callers bound the number of transfers themselves
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        this.webClient = builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    /**
+     * Posts the file as the multipart upload the data nodes expect, reading it from an
+     * AsynchronousFileChannel as the request body is sent.
+     *
+     * @return the node's response body
+     */
+    public Mono<String> upload(String uploadUrl, String username, File file, String targetDfsDir, String hash) {
+        Path path = file.toPath();
+        Flux<DataBuffer> content = DataBufferUtils.readAsynchronousFileChannel(
+                () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ), bufferFactory, (int) bufferSize.toBytes())
+                .onErrorMap(IOException.class, e -> SourceReadException.of(path, e)); // Not the node's fault
+
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.asyncPart("file", content, DataBuffer.class)
+                .filename(file.getName())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
+        body.part("user", username);
+        body.part("targetDir", targetDfsDir);
+        if (hash != null) {
+            body.part("hash", hash);
+        }
+
+        return webClient.post()
+                .uri(uploadUrl)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .retrieve()
+                .bodyToMono(String.class)
+                .defaultIfEmpty("");
+    }
+
+    /**
+     * Streams url into partPath. When existing is positive the missing tail is requested
+     * with a Range header and appended; a 200 response rewrites the file from the start.
+     *
+     * @return the size of the part file after the transfer
+     */
+    public Mono<Long> download(String url, Path partPath, long existing, TransferProgressListener listener) {
+        return webClient.get()
+                .uri(url)
+                .headers(headers -> {
+                    if (existing > 0) {
+                        headers.set(HttpHeaders.RANGE, "bytes=" + existing + "-");
+                        headers.set(HttpHeaders.ACCEPT_ENCODING, "identity");
+                    }
+                })
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createError();
+                    }
+                    long offset = response.statusCode() == HttpStatus.PARTIAL_CONTENT ? existing : 0;
+                    long length = response.headers().contentLength().orElse(-1);
+                    long total = length < 0 ? -1 : offset + length;
+                    if (offset > 0) {
+                        logger.info("Resuming download of {} at byte {}", url, offset);
+                    }
+                    AtomicLong written = new AtomicLong(offset);
+                    Flux<DataBuffer> body = response.bodyToFlux(DataBuffer.class)
+                            .doOnNext(buffer -> listener.onProgress(written.addAndGet(buffer.readableByteCount()), total));
+                    return Mono.using(
+                            () -> openForWrite(partPath, offset),
+                            channel -> DataBufferUtils.write(body, channel, offset)
+                                    .doOnNext(DataBufferUtils::release)
+                                    .then(Mono.fromCallable(() -> {
+                                        transferMetrics.recordBytes("download", url, written.get() - offset);
+                                        return written.get();
+                                    })),
+                            this::closeQuietly);
+                });
+    }
+
+    /**
+     * Blocking form of {@link #upload} for callers that need the result in place.
+     */
+    public String uploadBlocking(String uploadUrl, String username, File file, String targetDfsDir, String hash) {
+        return upload(uploadUrl, username, file, targetDfsDir, hash).block();
+    }
+
+    /**
+     * Blocking form of {@link #download}; I/O failures surface as IOException like
+     * they do on the RestTemplate path.
+     */
+    public long downloadBlocking(String url, Path partPath, long existing, TransferProgressListener listener) throws IOException {
+        try {
+            return download(url, partPath, existing, listener).block();
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw e;
+        }
+    }
+
+    private AsynchronousFileChannel openForWrite(Path partPath, long offset) throws IOException {
+        AsynchronousFileChannel channel = AsynchronousFileChannel.open(partPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(offset);
+        return channel;
+    }
+
+    private void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close {}: {}", channel, e.getMessage());
+        }
+    }
+}
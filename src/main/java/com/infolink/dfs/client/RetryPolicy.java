@@ -0,0 +1,41 @@
+package com.infolink.dfs.client;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter: the wait before retry n is drawn uniformly
+ * from [0, min(maxBackoff, initialBackoff * multiplier^(n-1))]. The jitter keeps many
+ * clients that failed together from retrying in lockstep against a recovering server.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+
+    public RetryPolicy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, double multiplier) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.multiplier = multiplier;
+    }
+
+    public int getMaxAttempts() 			{        return maxAttempts;    }
+    public Duration getInitialBackoff() 	{        return initialBackoff;    }
+    public Duration getMaxBackoff() 		{        return maxBackoff;    }
+    public double getMultiplier() 			{        return multiplier;    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     * @return how long to wait before the next attempt
+     */
+    public Duration backoff(int attempt) {
+        double ceiling = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        long cap = (long) Math.min(maxBackoff.toMillis(), ceiling);
+        return cap <= 0 ? Duration.ZERO : Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+}
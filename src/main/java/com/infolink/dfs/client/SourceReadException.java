@@ -0,0 +1,26 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+
+/**
+ * An I/O error reading the content being uploaded (a local file, a spooled part or an
+ * incoming request body), as opposed to one talking to a data node. It is an
+ * IOException so that the HTTP clients wrap it like any other error of the request
+ * body, and NodeRegistry looks for it in the cause chain so that such errors are not
+ * held against the node.
+ */
+public class SourceReadException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public SourceReadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Marks the error as one of the source, unless it already is.
+     */
+    static SourceReadException of(Object source, IOException e) {
+        return e instanceof SourceReadException ? (SourceReadException) e
+                : new SourceReadException("Could not read " + source + ": " + e.getMessage(), e);
+    }
+}
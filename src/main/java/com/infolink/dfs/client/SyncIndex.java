@@ -0,0 +1,203 @@
+package com.infolink.dfs.client;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local index of what a directory sync has already uploaded: for every file, relative
+ * to the synced directory, its size, modification time and content hash. There is one
+ * index file per (local directory, DFS directory) pair, stored as tab-separated lines
+ * <pre>
+ *   &lt;size&gt; &lt;mtime&gt; &lt;hash or -&gt; &lt;relative path&gt;
+ * </pre>
+ * and rewritten atomically at the end of each run. A file whose size and mtime match
+ * its entry is unchanged without being read; one whose mtime moved but whose hash still
+ * matches was only touched. Entries the walk did not see are the local deletions.
+ */
+@Component
+public class SyncIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SyncIndex.class);
+    private static final String NO_HASH = "-";
+
+    @Value("${sync.index.dir:${user.home}/.dfsclient/sync}")
+    private String indexDir;
+
+    /**
+     * Loads the index of a sync pair; a pair that was never synced starts empty.
+     */
+    public Session open(File directory, String targetDfsDir) {
+        Path file = Paths.get(indexDir, indexName(directory, targetDfsDir));
+        Session session = new Session(directory.toPath().toAbsolutePath(), file);
+        if (Files.exists(file)) {
+            try {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    session.load(line);
+                }
+            } catch (IOException e) {
+                // A lost index only costs one full pass, which the metanode dedup keeps cheap
+                logger.warn("Could not read sync index {}, syncing everything: {}", file, e.getMessage());
+                session.entries.clear();
+            }
+        }
+        logger.debug("Sync index {} loaded with {} entries", file, session.entries.size());
+        return session;
+    }
+
+    private static String indexName(File directory, String targetDfsDir) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] id = digest.digest((directory.getAbsolutePath() + "\n" + targetDfsDir).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(id, 0, 16) + ".idx";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Entry {
+        private final long size;
+        private final long mtime;
+        private final String hash; // Null when the file was uploaded without hashing
+
+        Entry(long size, long mtime, String hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+        }
+
+        public long getSize() 		{        return size;    }
+        public long getMtime() 		{        return mtime;    }
+        public String getHash() 	{        return hash;    }
+    }
+
+    /**
+     * One sync run against an index. Lookups come from the walking thread, updates from
+     * the upload workers.
+     */
+    public static class Session {
+        private final Path root;
+        private final Path file;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+        Session(Path root, Path file) {
+            this.root = root;
+            this.file = file;
+        }
+
+        private void load(String line) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4) {
+                return; // Torn or foreign line
+            }
+            try {
+                entries.put(fields[3], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        NO_HASH.equals(fields[2]) ? null : fields[2]));
+            } catch (NumberFormatException ignored) {
+                // Torn or foreign line
+            }
+        }
+
+        /**
+         * Marks the file as present and tells whether it is unchanged since it was synced.
+         *
+         * @param size size of the file as the walk saw it
+         * @param mtime modification time in milliseconds, as the walk saw it
+         */
+        public boolean isUnchanged(File file, long size, long mtime) {
+            String key = key(file);
+            seen.add(key);
+            Entry entry = entries.get(key);
+            return entry != null && entry.size == size && entry.mtime == mtime;
+        }
+
+        /**
+         * True when the file was synced with this content, even though its mtime moved.
+         */
+        public boolean hasContent(File file, long size, String hash) {
+            Entry entry = entries.get(key(file));
+            return hash != null && entry != null && entry.size == size && hash.equals(entry.hash);
+        }
+
+        /**
+         * True when the file was synced with a hash and this size, so hashing it can tell
+         * whether only its mtime moved.
+         */
+        public boolean mayHaveContent(File file, long size) {
+            Entry entry = entries.get(key(file));
+            return entry != null && entry.size == size && entry.hash != null;
+        }
+
+        /**
+         * Records that the file is stored in DFS as it was when the walk saw it. Size and
+         * mtime must be those read before the upload: read afterwards, a file modified
+         * during its upload would be indexed with the new mtime and the old content.
+         */
+        public void update(File file, long size, long mtime, String hash) {
+            entries.put(key(file), new Entry(size, mtime, hash));
+        }
+
+        /**
+         * Removes the entries of files the walk did not see and returns their relative
+         * paths. Only meaningful after a complete walk.
+         */
+        public List<String> removeUnseen() {
+            List<String> deleted = new ArrayList<>();
+            for (String key : entries.keySet()) {
+                if (!seen.contains(key)) {
+                    deleted.add(key);
+                }
+            }
+            deleted.forEach(entries::remove);
+            deleted.sort(null);
+            return deleted;
+        }
+
+        /**
+         * Writes the index to a temporary file and moves it into place.
+         */
+        public void save() {
+            try {
+                Files.createDirectories(file.getParent());
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                        Entry entry = e.getValue();
+                        out.write(entry.size + "\t" + entry.mtime + "\t" + (entry.hash != null ? entry.hash : NO_HASH) + "\t" + e.getKey());
+                        out.newLine();
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // The journal still prevents re-uploads; the next run just has a bigger delta
+                logger.warn("Could not write sync index {}: {}", file, e.getMessage());
+            }
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        private String key(File file) {
+            return root.relativize(file.toPath().toAbsolutePath()).toString().replace(File.separatorChar, '/');
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.infolink.dfs.client;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Append-only checkpoint journal of finished transfer work, used to resume
+ * interrupted uploads and downloads. Each line is one record:
+ * <pre>
+ *   F &lt;key&gt; &lt;millis&gt;  whole file finished, and when
+ *   B &lt;key&gt; &lt;index&gt;   block or range finished
+ *   R &lt;key&gt;           forget everything recorded for key
+ * </pre>
+ * The journal is replayed into memory at startup and rewritten with only the live
+ * records, and again whenever enough records were appended since, so it does not grow
+ * without bound across runs nor within a long one.
+ * <p>
+ * A file key ends with the version of the file (see {@link #uploadKey}); only the
+ * latest version of a file is kept, so a file that keeps changing holds one record.
+ * File records older than file-records.max-age are dropped at compaction, as are the
+ * oldest ones beyond file-records.max-entries: forgetting one only costs a metanode
+ * lookup when that file is seen again.
+ */
+@Component
+public class TransferJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TransferJournal.class);
+    private static final String JOURNAL_FILE = "transfers.journal";
+
+    @Value("${journal.enabled:true}")
+    private boolean enabled;
+    @Value("${journal.dir:${user.home}/.dfsclient/journal}")
+    private String journalDir;
+    @Value("${journal.file-records.max-age:30d}")
+    private Duration maxFileRecordAge;
+    @Value("${journal.file-records.max-entries:100000}")
+    private int maxFileRecords;
+
+    private final Map<String, FileRecord> completedFiles = new ConcurrentHashMap<>(); // By file, without its version
+    private final Map<String, Set<Integer>> completedBlocks = new ConcurrentHashMap<>();
+    private Path journal;
+    private BufferedWriter writer;
+    private int appended; // Records written since the last compaction
+
+    @PostConstruct
+    public void postConstruct() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path dir = Paths.get(journalDir);
+        Files.createDirectories(dir);
+        journal = dir.resolve(JOURNAL_FILE);
+        if (Files.exists(journal)) {
+            replay(Files.readAllLines(journal, StandardCharsets.UTF_8));
+            compact();
+        }
+        openWriter();
+        logger.debug("Transfer journal loaded: {} files, {} partial transfers", completedFiles.size(), completedBlocks.size());
+    }
+
+    @PreDestroy
+    public synchronized void preDestroy() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Key for uploading a local file into a DFS directory, as it is now.
+     */
+    public static String uploadKey(File file, String targetDfsDir) {
+        return uploadKey(file, file.length(), file.lastModified(), targetDfsDir);
+    }
+
+    /**
+     * Key for uploading a local file of the given size and modification time into a
+     * DFS directory. Size and modification time are the version of the file and come
+     * last, so a changed file is uploaded again and its record replaces the old one.
+     */
+    public static String uploadKey(File file, long size, long lastModified, String targetDfsDir) {
+        return "U|" + targetDfsDir + "|" + file.getAbsolutePath() + "|" + size + ":" + lastModified;
+    }
+
+    public boolean isFileCompleted(String key) {
+        if (!enabled) {
+            return false;
+        }
+        FileRecord record = completedFiles.get(subject(key));
+        return record != null && record.key.equals(key);
+    }
+
+    public void markFileCompleted(String key) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        FileRecord previous = completedFiles.put(subject(key), new FileRecord(key, now));
+        if (previous == null || !previous.key.equals(key)) {
+            completedBlocks.remove(key);
+            append("F\t" + key + "\t" + now);
+        }
+    }
+
+    public Set<Integer> getCompletedBlocks(String key) {
+        if (!enabled) {
+            return Collections.emptySet();
+        }
+        Set<Integer> blocks = completedBlocks.get(key);
+        return blocks == null ? Collections.emptySet() : new HashSet<>(blocks);
+    }
+
+    public void markBlockCompleted(String key, int index) {
+        if (enabled && completedBlocks.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(index)) {
+            append("B\t" + key + "\t" + index);
+        }
+    }
+
+    /**
+     * Drops all records for the key, e.g. when a transfer restarts from scratch or its
+     * partial state is no longer needed.
+     */
+    public void reset(String key) {
+        if (!enabled) {
+            return;
+        }
+        FileRecord record = completedFiles.get(subject(key));
+        boolean hadFile = record != null && record.key.equals(key) && completedFiles.remove(subject(key), record);
+        boolean hadBlocks = completedBlocks.remove(key) != null;
+        if (hadFile || hadBlocks) {
+            append("R\t" + key);
+        }
+    }
+
+    private synchronized void append(String record) {
+        try {
+            writer.write(record);
+            writer.newLine();
+            writer.flush();
+            if (++appended >= maxFileRecords) {
+                writer.close();
+                compact();
+                openWriter();
+            }
+        } catch (IOException e) {
+            // Losing a checkpoint only costs redoing that work on the next run
+            logger.warn("Could not write transfer journal record: {}", e.getMessage());
+        }
+    }
+
+    private void openWriter() throws IOException {
+        writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void replay(List<String> lines) {
+        for (String line : lines) {
+            if (line.length() < 3 || line.charAt(1) != '\t') {
+                continue; // Torn write from a crash
+            }
+            String rest = line.substring(2);
+            switch (line.charAt(0)) {
+                case 'F':
+                    int end = rest.lastIndexOf('\t');
+                    String key = rest;
+                    long completedAt = System.currentTimeMillis(); // Records written before the time was
+                    if (end > 0) {
+                        try {
+                            completedAt = Long.parseLong(rest.substring(end + 1));
+                            key = rest.substring(0, end);
+                        } catch (NumberFormatException ignored) {
+                            // No time, the tab is part of the key
+                        }
+                    }
+                    completedFiles.put(subject(key), new FileRecord(key, completedAt));
+                    completedBlocks.remove(key);
+                    break;
+                case 'B':
+                    int tab = rest.lastIndexOf('\t');
+                    try {
+                        completedBlocks.computeIfAbsent(rest.substring(0, tab), k -> ConcurrentHashMap.newKeySet())
+                                .add(Integer.parseInt(rest.substring(tab + 1)));
+                    } catch (RuntimeException ignored) {
+                        // Torn write from a crash
+                    }
+                    break;
+                case 'R':
+                    completedFiles.computeIfPresent(subject(rest), (subject, record) -> record.key.equals(rest) ? null : record);
+                    completedBlocks.remove(rest);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Drops the expired and excess file records and rewrites the journal with what is
+     * left. Callers either run before the writer is opened or hold the instance lock
+     * with the writer closed.
+     */
+    private void compact() throws IOException {
+        pruneFileRecords();
+        Path tmp = journal.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (FileRecord record : completedFiles.values()) {
+                out.write("F\t" + record.key + "\t" + record.completedAt);
+                out.newLine();
+            }
+            for (Map.Entry<String, Set<Integer>> entry : completedBlocks.entrySet()) {
+                for (Integer index : entry.getValue()) {
+                    out.write("B\t" + entry.getKey() + "\t" + index);
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appended = 0;
+    }
+
+    private void pruneFileRecords() {
+        long oldest = System.currentTimeMillis() - maxFileRecordAge.toMillis();
+        completedFiles.values().removeIf(record -> record.completedAt < oldest);
+        int excess = completedFiles.size() - maxFileRecords;
+        if (excess > 0) {
+            List<Map.Entry<String, FileRecord>> entries = new ArrayList<>(completedFiles.entrySet());
+            entries.sort(Comparator.comparingLong(e -> e.getValue().completedAt));
+            for (Map.Entry<String, FileRecord> entry : entries.subList(0, excess)) {
+                completedFiles.remove(entry.getKey(), entry.getValue());
+            }
+            logger.debug("Dropped the {} oldest file records from the transfer journal", excess);
+        }
+    }
+
+    /**
+     * The file a key is about: the key without its version, which follows the last '|'.
+     */
+    private static String subject(String key) {
+        int end = key.lastIndexOf('|');
+        return end < 0 ? key : key.substring(0, end);
+    }
+
+    int getFileRecordCount() {
+        return completedFiles.size();
+    }
+
+    private static class FileRecord {
+        final String key;
+        final long completedAt;
+
+        FileRecord(String key, long completedAt) {
+            this.key = key;
+            this.completedAt = completedAt;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.infolink.dfs.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Micrometer meters for calls to the metanode and data nodes. Every call is tagged
+ * with its operation (upload, download, upload-url, list, ...) and the node it went
+ * to, which gives per-node throughput and metanode latency on the dashboards:
+ * <ul>
+ *   <li>dfs.client.requests: timer with a latency histogram, tagged with the outcome</li>
+ *   <li>dfs.client.transfer.bytes: bytes sent or received, tagged with the direction</li>
+ *   <li>dfs.client.inflight: calls currently running per operation</li>
+ *   <li>dfs.client.errors: failed calls, tagged with the cause</li>
+ *   <li>dfs.client.pack.orphaned: containers stored whose files could not be committed</li>
+ * </ul>
+ */
+@Component
+public class TransferMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public TransferMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Runs the call and records its latency, outcome and any error against the node
+     * that serves the url.
+     */
+    public <T> T record(String operation, String url, Supplier<T> call) {
+        String node = node(url);
+        AtomicInteger active = inFlight(operation);
+        active.incrementAndGet();
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            outcome = "error";
+            countError(operation, node, e);
+            throw e;
+        } finally {
+            stop(sample, operation, node, outcome);
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reactive form of {@link #record}: timing starts on subscription and stops when
+     * the call completes, fails or is cancelled.
+     */
+    public <T> Mono<T> recordAsync(String operation, String url, Mono<T> call) {
+        String node = node(url);
+        return Mono.defer(() -> {
+            AtomicInteger active = inFlight(operation);
+            active.incrementAndGet();
+            Timer.Sample sample = Timer.start(registry);
+            return call
+                    .doOnError(e -> countError(operation, node, e))
+                    .doFinally(signal -> {
+                        stop(sample, operation, node, signal == SignalType.ON_ERROR ? "error"
+                                : signal == SignalType.CANCEL ? "cancelled" : "success");
+                        active.decrementAndGet();
+                    });
+        });
+    }
+
+    private AtomicInteger inFlight(String operation) {
+        return inFlight.computeIfAbsent(operation, op -> {
+            AtomicInteger gauge = new AtomicInteger();
+            Gauge.builder("dfs.client.inflight", gauge, AtomicInteger::get)
+                    .description("DFS calls currently in progress")
+                    .tag("operation", op)
+                    .register(registry);
+            return gauge;
+        });
+    }
+
+    private void countError(String operation, String node, Throwable e) {
+        Counter.builder("dfs.client.errors")
+                .description("Failed DFS calls")
+                .tags("operation", operation, "node", node, "cause", cause(e))
+                .register(registry)
+                .increment();
+    }
+
+    private void stop(Timer.Sample sample, String operation, String node, String outcome) {
+        sample.stop(Timer.builder("dfs.client.requests")
+                .description("Latency of DFS calls")
+                .tags("operation", operation, "node", node, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * @param direction "upload" or "download"
+     */
+    public void recordBytes(String direction, String url, long bytes) {
+        Counter.builder("dfs.client.transfer.bytes")
+                .description("Bytes transferred to or from DFS nodes")
+                .baseUnit("bytes")
+                .tags("direction", direction, "node", node(url))
+                .register(registry)
+                .increment(bytes);
+    }
+
+    public void recordOrphanedContainer() {
+        Counter.builder("dfs.client.pack.orphaned")
+                .description("Pack containers stored in DFS without committed files referring to them")
+                .register(registry)
+                .increment();
+    }
+
+    static String node(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() == null) {
+                return "unknown";
+            }
+            return uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Short, low-cardinality cause: the HTTP status for error responses, otherwise the
+     * kind of I/O failure found in the cause chain.
+     */
+    static String cause(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof HttpStatusCodeException) {
+                return "http_" + ((HttpStatusCodeException) t).getStatusCode().value();
+            }
+            if (t instanceof WebClientResponseException) {
+                return "http_" + ((WebClientResponseException) t).getStatusCode().value();
+            }
+            if (t instanceof InterruptedIOException) {
+                return "timeout";
+            }
+            if (t instanceof ConnectException) {
+                return "connect";
+            }
+            if (t instanceof IOException) {
+                return "io";
+            }
+        }
+        return e.getClass().getSimpleName();
+    }
+}
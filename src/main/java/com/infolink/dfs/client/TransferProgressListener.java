@@ -0,0 +1,15 @@
+package com.infolink.dfs.client;
+
+/**
+ * Callback for byte-level progress of an upload or download.
+ */
+@FunctionalInterface
+public interface TransferProgressListener {
+    TransferProgressListener NONE = (transferred, total) -> {};
+
+    /**
+     * @param bytesTransferred bytes moved so far
+     * @param totalBytes       expected size, or -1 when the server did not send a length
+     */
+    void onProgress(long bytesTransferred, long totalBytes);
+}
@@ -0,0 +1,170 @@
+package com.infolink.dfs.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Channel copy helpers shared by the streaming transfer paths. Copies go through
+ * FileChannel.transferFrom in fixed-size steps, so heap use does not depend on the
+ * size of the file.
+ */
+final class TransferUtils {
+    static final int TRANSFER_CHUNK = 1024 * 1024;
+
+    private TransferUtils() {}
+
+    /**
+     * Copies the source channel into the file channel starting at the given position
+     * until end of stream, reporting progress after every chunk.
+     *
+     * @return number of bytes written
+     */
+    static long copyToChannel(ReadableByteChannel in, FileChannel out, long position,
+                              long expectedBytes, TransferProgressListener listener) throws IOException {
+        long written = 0;
+        while (true) {
+            long n = out.transferFrom(in, position + written, TRANSFER_CHUNK);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+            listener.onProgress(written, expectedBytes);
+        }
+        return written;
+    }
+
+    /**
+     * Counts the bytes read through it and reports them as progress.
+     */
+    static final class ProgressInputStream extends FilterInputStream {
+        private final long expectedBytes;
+        private final TransferProgressListener listener;
+        private volatile long count;
+
+        ProgressInputStream(InputStream in, long expectedBytes, TransferProgressListener listener) {
+            super(in);
+            this.expectedBytes = expectedBytes;
+            this.listener = listener;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        private void advance(long n) {
+            count += n;
+            listener.onProgress(count, expectedBytes);
+        }
+    }
+
+    /**
+     * Reports every I/O error of the wrapped upload content as a SourceReadException,
+     * so a file that vanishes or a client that aborts is not blamed on the data node.
+     */
+    static final class SourceInputStream extends FilterInputStream {
+        private final Object source;
+
+        SourceInputStream(InputStream in, Object source) {
+            super(in);
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw SourceReadException.of(source, e);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw SourceReadException.of(source, e);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                throw SourceReadException.of(source, e);
+            }
+        }
+    }
+
+    /**
+     * Resource whose length and content are those of the delegate, with read errors
+     * reported as SourceReadException like SourceInputStream does.
+     */
+    static final class SourceResource extends AbstractResource {
+        private final Resource delegate;
+
+        SourceResource(Resource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getFilename() {
+            return delegate.getFilename();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            try {
+                return delegate.contentLength();
+            } catch (IOException e) {
+                throw SourceReadException.of(delegate.getDescription(), e);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            return delegate.getDescription();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return new SourceInputStream(delegate.getInputStream(), delegate.getDescription());
+            } catch (IOException e) {
+                throw SourceReadException.of(delegate.getDescription(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.infolink.dfs.client;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A directory upload running in the background. The getters form the progress
+ * snapshot returned by the job endpoints and pushed to Server-Sent Event listeners.
+ */
+public class UploadJob {
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private static final int MAX_REPORTED_FAILURES = 100;
+    private static final int MAX_REPORTED_DELETIONS = 1000;
+
+    private final String id;
+    private final UploadSummary summary;
+    private final boolean sync;
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile String error;
+    private volatile Future<?> future;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public UploadJob(String id, UploadSummary summary) {
+        this(id, summary, false);
+    }
+
+    public UploadJob(String id, UploadSummary summary, boolean sync) {
+        this.id = id;
+        this.summary = summary;
+        this.sync = sync;
+    }
+
+    public String getId() 				{        return id;    }
+    public Status getStatus() 			{        return status;    }
+    public String getError() 			{        return error;    }
+    public boolean isSync() 			{        return sync;    }
+    public int getDeletedCount() 		{        return summary.getDeleted().size();    }
+    public String getDirectory() 		{        return summary.getDirectory();    }
+    public String getTargetDir() 		{        return summary.getTargetDir();    }
+    public int getFilesFound() 			{        return summary.getFilesFound();    }
+    public long getBytesFound() 		{        return summary.getBytesFound();    }
+    public boolean isScanComplete() 	{        return summary.isScanComplete();    }
+    public int getFilesDone() 			{        return summary.getTotalFiles();    }
+    public long getBytesDone() 			{        return summary.getBytesProcessed();    }
+    public int getUploaded() 			{        return summary.getUploaded();    }
+    public int getSkipped() 			{        return summary.getSkipped();    }
+    public int getFailed() 				{        return summary.getFailed();    }
+    public long getBytesUploaded() 		{        return summary.getBytesUploaded();    }
+    public long getElapsedMillis() 		{        return summary.getElapsedMillis();    }
+    @JsonIgnore
+    public UploadSummary getSummary() 	{        return summary;    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    /**
+     * Bytes actually sent to the data nodes per second since the job started.
+     */
+    public long getThroughputBytesPerSecond() {
+        long elapsed = summary.getElapsedMillis();
+        return elapsed > 0 ? summary.getBytesUploaded() * 1000 / elapsed : 0;
+    }
+
+    /**
+     * Remaining time at the current processing rate, or null while it cannot be
+     * estimated (nothing processed yet, the tree is still being walked, or finished).
+     */
+    public Long getEtaSeconds() {
+        long done = summary.getBytesProcessed();
+        long elapsed = summary.getElapsedMillis();
+        if (isFinished() || !summary.isScanComplete() || done == 0 || elapsed == 0) {
+            return null;
+        }
+        long remaining = Math.max(0, summary.getBytesFound() - done);
+        return (long) ((double) remaining * elapsed / done / 1000);
+    }
+
+    /**
+     * The first failed files of the job, capped so polling stays cheap on huge trees.
+     */
+    public List<UploadSummary.FileResult> getFailures() {
+        return summary.getFailures(MAX_REPORTED_FAILURES);
+    }
+
+    /**
+     * Files a sync found deleted locally, capped like the failures.
+     */
+    public List<String> getDeleted() {
+        List<String> deleted = summary.getDeleted();
+        return deleted.size() > MAX_REPORTED_DELETIONS ? deleted.subList(0, MAX_REPORTED_DELETIONS) : deleted;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    void requestCancel() {
+        this.cancelRequested = true;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    List<SseEmitter> getEmitters() {
+        return emitters;
+    }
+}
@@ -0,0 +1,194 @@
+package com.infolink.dfs.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs directory uploads as background jobs so the request thread returns at once
+ * with a job ID. Jobs run on their own small pool; the files of each job are still
+ * uploaded by the shared upload pool in FileClientService. Progress is available by
+ * polling, or pushed every progress-interval to Server-Sent Event subscribers.
+ * Finished jobs are kept for the retention period and then forgotten.
+ */
+@Service
+public class UploadJobManager {
+    private static final Logger logger = LoggerFactory.getLogger(UploadJobManager.class);
+
+    @Value("${upload.jobs.max-concurrent:4}")
+    private int maxConcurrentJobs; // Further jobs wait in QUEUED
+    @Value("${upload.jobs.retention:1h}")
+    private Duration retention;
+    @Value("${upload.jobs.progress-interval:1s}")
+    private Duration progressInterval;
+    @Value("${upload.jobs.sse-timeout:30m}")
+    private Duration sseTimeout;
+    @Autowired
+    private FileClientService fileClientService;
+
+    private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService jobExecutor;
+    private ScheduledExecutorService progressScheduler;
+
+    @PostConstruct
+    public void postConstruct() {
+    	this.jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, new CustomizableThreadFactory("dfs-job-"));
+    	this.progressScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("dfs-job-progress-"));
+    	long interval = progressInterval.toMillis();
+    	progressScheduler.scheduleAtFixedRate(this::publishProgress, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+    	jobs.values().forEach(UploadJob::requestCancel);
+    	progressScheduler.shutdownNow();
+    	jobExecutor.shutdownNow();
+    }
+
+    public UploadJob submit(String username, String directoryPath, String targetDfsDir) {
+        return submit(username, directoryPath, targetDfsDir, false, false);
+    }
+
+    /**
+     * @param sync run as an incremental sync against the local sync index
+     * @param reportDeletions with sync, list indexed files that were deleted locally
+     * @throws IllegalArgumentException when the path is not a directory
+     */
+    public UploadJob submit(String username, String directoryPath, String targetDfsDir, boolean sync, boolean reportDeletions) {
+        if (!new File(directoryPath).isDirectory()) {
+            throw new IllegalArgumentException("Provided path is not a directory.");
+        }
+        purgeExpiredJobs();
+        UploadJob job = new UploadJob(UUID.randomUUID().toString(), new UploadSummary(directoryPath, targetDfsDir), sync);
+        jobs.put(job.getId(), job);
+        job.setFuture(jobExecutor.submit(() -> run(job, username, reportDeletions)));
+        logger.info("Directory {} job {} submitted: {} -> {}", sync ? "sync" : "upload", job.getId(), directoryPath, targetDfsDir);
+        return job;
+    }
+
+    private void run(UploadJob job, String username, boolean reportDeletions) {
+        if (job.isCancelRequested()) {
+            job.setStatus(UploadJob.Status.CANCELLED);
+            job.getSummary().complete();
+            publish(job);
+            return;
+        }
+        job.setStatus(UploadJob.Status.RUNNING);
+        try {
+            if (job.isSync()) {
+                fileClientService.syncDirectory(username, job.getDirectory(), job.getTargetDir(), reportDeletions,
+                        job.getSummary(), job::isCancelRequested);
+            } else {
+                fileClientService.uploadFilesFromDirectory(username, job.getDirectory(), job.getTargetDir(),
+                        job.getSummary(), job::isCancelRequested);
+            }
+            job.setStatus(job.isCancelRequested() ? UploadJob.Status.CANCELLED : UploadJob.Status.COMPLETED);
+        } catch (Exception e) {
+            logger.error("Directory upload job {} failed: {}", job.getId(), e.getMessage());
+            job.setError(e.getMessage());
+            job.getSummary().complete();
+            job.setStatus(UploadJob.Status.FAILED);
+        }
+        publish(job);
+    }
+
+    public UploadJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return all known jobs, newest first
+     */
+    public List<UploadJob> getJobs() {
+        List<UploadJob> list = new ArrayList<>(jobs.values());
+        list.sort(Comparator.comparingLong((UploadJob job) -> job.getSummary().getStartTime()).reversed());
+        return list;
+    }
+
+    /**
+     * Stops the job from starting further files. Uploads already running finish, so
+     * the job reaches CANCELLED shortly after this returns.
+     *
+     * @return false when the job is unknown or already finished
+     */
+    public boolean cancel(String id) {
+        UploadJob job = jobs.get(id);
+        if (job == null || job.isFinished()) {
+            return false;
+        }
+        job.requestCancel();
+        if (job.getFuture() != null && job.getFuture().cancel(false)) {
+            // Still queued, so it will never run
+            job.getSummary().complete();
+            job.setStatus(UploadJob.Status.CANCELLED);
+            publish(job);
+        }
+        logger.info("Directory upload job {} cancellation requested", id);
+        return true;
+    }
+
+    /**
+     * Registers an SSE subscriber. The current progress is sent at once; a finished
+     * job sends its final state and completes the stream.
+     */
+    public SseEmitter subscribe(UploadJob job) {
+        SseEmitter emitter = new SseEmitter(sseTimeout.toMillis());
+        emitter.onCompletion(() -> job.getEmitters().remove(emitter));
+        emitter.onTimeout(() -> job.getEmitters().remove(emitter));
+        emitter.onError(e -> job.getEmitters().remove(emitter));
+        job.getEmitters().add(emitter);
+        publish(job);
+        return emitter;
+    }
+
+    private void publishProgress() {
+        for (UploadJob job : jobs.values()) {
+            if (!job.getEmitters().isEmpty() && !job.isFinished()) {
+                publish(job);
+            }
+        }
+    }
+
+    private void publish(UploadJob job) {
+        boolean finished = job.isFinished();
+        for (SseEmitter emitter : job.getEmitters()) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name(finished ? "done" : "progress")
+                        .data(job, MediaType.APPLICATION_JSON));
+                if (finished) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                job.getEmitters().remove(emitter); // Client went away
+            }
+        }
+    }
+
+    private void purgeExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        jobs.values().removeIf(job -> job.isFinished() && job.getSummary().getEndTime() < cutoff);
+    }
+}
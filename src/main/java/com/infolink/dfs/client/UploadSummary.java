@@ -0,0 +1,134 @@
+package com.infolink.dfs.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and completion summary of a directory upload. Files are counted as found
+ * while the tree is walked and results are recorded from the upload workers, so all
+ * counters are safe to read and update concurrently.
+ * <p>
+ * Only the first MAX_RESULTS per-file results and failures are kept, so a job over
+ * millions of files holds its counters and a bounded sample, not one object per file.
+ */
+public class UploadSummary {
+    public enum Status { UPLOADED, SKIPPED, FAILED }
+
+    static final int MAX_RESULTS = 1000;
+
+    private final String directory;
+    private final String targetDir;
+    private final long startTime;
+    private volatile long endTime;
+    private volatile boolean scanComplete;
+    private final AtomicInteger filesFound = new AtomicInteger();
+    private final AtomicLong bytesFound = new AtomicLong();
+    private final AtomicLong bytesProcessed = new AtomicLong(); // Bytes of files with any result
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final ConcurrentLinkedQueue<FileResult> results = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<FileResult> failures = new ConcurrentLinkedQueue<>();
+    private volatile List<String> deleted = List.of(); // Set by syncs that report deletions
+
+    public UploadSummary(String directory, String targetDir) {
+        this.directory = directory;
+        this.targetDir = targetDir;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void fileFound(long size) {
+        filesFound.incrementAndGet();
+        bytesFound.addAndGet(size);
+    }
+
+    public void scanCompleted() {
+        this.scanComplete = true;
+    }
+
+    public void record(FileResult result) {
+        bytesProcessed.addAndGet(result.getSize());
+        switch (result.getStatus()) {
+            case UPLOADED:
+                uploaded.incrementAndGet();
+                bytesUploaded.addAndGet(result.getSize());
+                break;
+            case SKIPPED:
+                skipped.incrementAndGet();
+                break;
+            case FAILED:
+                if (failed.incrementAndGet() <= MAX_RESULTS) {
+                    failures.add(result);
+                }
+                break;
+        }
+        if (recorded.incrementAndGet() <= MAX_RESULTS) {
+            results.add(result);
+        }
+    }
+
+    /**
+     * @param deleted files, relative to the synced directory, that were synced before
+     *        and no longer exist locally
+     */
+    public void setDeleted(List<String> deleted) {
+        this.deleted = List.copyOf(deleted);
+    }
+
+    public void complete() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    public String getDirectory() 		{        return directory;    }
+    public String getTargetDir() 		{        return targetDir;    }
+    public int getTotalFiles() 			{        return uploaded.get() + skipped.get() + failed.get();    }
+    public int getUploaded() 			{        return uploaded.get();    }
+    public int getSkipped() 			{        return skipped.get();    }
+    public int getFailed() 				{        return failed.get();    }
+    public long getBytesUploaded() 		{        return bytesUploaded.get();    }
+    public long getStartTime() 			{        return startTime;    }
+    public long getEndTime() 			{        return endTime;    }
+    public long getElapsedMillis() 		{        return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;    }
+    public List<FileResult> getResults() {        return new ArrayList<>(results);    }
+    public boolean isResultsTruncated() {       return recorded.get() > MAX_RESULTS;    }
+    public int getFilesFound() 			{        return filesFound.get();    }
+    public long getBytesFound() 		{        return bytesFound.get();    }
+    public long getBytesProcessed() 	{        return bytesProcessed.get();    }
+    public boolean isScanComplete() 	{        return scanComplete;    }
+    public boolean isComplete() 		{        return endTime > 0;    }
+    public List<String> getDeleted() 	{        return deleted;    }
+
+    /**
+     * @return at most max (and at most MAX_RESULTS) of the failed files, in the order they failed
+     */
+    public List<FileResult> getFailures(int max) {
+        return failures.stream().limit(max).toList();
+    }
+
+    /**
+     * Outcome of uploading a single file.
+     */
+    public static class FileResult {
+        private final String path;
+        private final long size;
+        private final Status status;
+        private final String message; // Server response, or the error for failed uploads
+
+        public FileResult(String path, long size, Status status, String message) {
+            this.path = path;
+            this.size = size;
+            this.status = status;
+            this.message = message;
+        }
+
+        public String getPath() 		{        return path;    }
+        public long getSize() 			{        return size;    }
+        public Status getStatus() 		{        return status;    }
+        public String getMessage() 		{        return message;    }
+    }
+}
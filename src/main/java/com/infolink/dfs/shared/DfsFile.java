@@ -36,6 +36,11 @@ public class DfsFile {
     // For files, contains content hash and block hashes
     private List<String> blockHashes; // For chunked storage if needed
     
+    // For small files packed into a container object, where their bytes are in it;
+    // they span size bytes from offset
+    private String container; // Name of the container object, null when stored on its own
+    private long offset;
+    
 	public String getName() {
 		return name;
 	}
@@ -90,6 +95,18 @@ public class DfsFile {
 	public void setCreateTime(Date createTime) {
 		this.createTime = createTime;
 	}
+	public String getContainer() {
+		return container;
+	}
+	public void setContainer(String container) {
+		this.container = container;
+	}
+	public long getOffset() {
+		return offset;
+	}
+	public void setOffset(long offset) {
+		this.offset = offset;
+	}
 	public Date getLastModifiedTime() {
 		return lastModifiedTime;
 	}
@@ -0,0 +1,75 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+class BlockCacheTest {
+    @TempDir
+    Path dir;
+
+    private final ContentHasher hasher = new ContentHasher("SHA-256");
+    private BlockCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BlockCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "cacheDir", dir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofBytes(20));
+        ReflectionTestUtils.setField(cache, "verify", true);
+        ReflectionTestUtils.setField(cache, "contentHasher", hasher);
+        cache.postConstruct();
+    }
+
+    private String put(String content) throws IOException {
+        Path file = Files.writeString(dir.resolve("source"), content);
+        String hash = hasher.hash(file);
+        cache.put(hash, file);
+        return hash;
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesBeyondTheByteLimit() throws IOException {
+        String a = put("aaaaaaaa");
+        String b = put("bbbbbbbb");
+        assertTrue(cache.readFile(a, 8, dir.resolve("a.out"))); // b is now the least recently used
+        String c = put("cccccccc");
+
+        assertEquals(2, cache.size());
+        assertEquals(16, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+        assertFalse(cache.readFile(b, 8, dir.resolve("b.out")));
+        assertTrue(cache.readFile(c, 8, dir.resolve("c.out")));
+        assertEquals("aaaaaaaa", Files.readString(dir.resolve("a.out")));
+
+        BlockCache reloaded = new BlockCache(); // The index is rebuilt from the directory
+        ReflectionTestUtils.setField(reloaded, "enabled", true);
+        ReflectionTestUtils.setField(reloaded, "cacheDir", dir.resolve("cache").toString());
+        ReflectionTestUtils.setField(reloaded, "maxSize", DataSize.ofBytes(20));
+        reloaded.postConstruct();
+        assertEquals(16, reloaded.getBytes());
+    }
+
+    @Test
+    void entryThatNoLongerMatchesItsHashIsDroppedOnRead() throws IOException {
+        String hash = put("original");
+        Files.write(dir.resolve("cache").resolve(hash), "tampered".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(cache.readFile(hash, 8, dir.resolve("out")));
+        assertFalse(Files.exists(dir.resolve("out")));
+        assertEquals(1, cache.getCorrupt());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.infolink.dfs.shared.DfsFile;
+
+class DirectoryListingCacheTest {
+    private DirectoryListingCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DirectoryListingCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "maxListingSize", 10);
+    }
+
+    private static List<DfsFile> listing(String name) {
+        return List.of(new DfsFile("hash-" + name, "alice", name, "/docs/" + name, 1, false, null, null));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedListing() {
+        cache.put("/a", "alice", listing("a"));
+        cache.put("/b", "alice", listing("b"));
+        assertNotNull(cache.get("/a", "alice")); // /b is now the least recently used
+        cache.put("/c", "alice", listing("c"));
+
+        assertNull(cache.get("/b", "alice"));
+        assertNotNull(cache.get("/a", "alice"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void expiredListingIsAMiss() {
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ZERO);
+        cache.put("/a", "alice", listing("a"));
+
+        assertNull(cache.get("/a", "alice"));
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    void invalidateDropsDirectoryForAllOwners() {
+        cache.put("/a", "alice", listing("a"));
+        cache.put("/a", "bob", listing("a"));
+
+        cache.invalidate("/a");
+
+        assertEquals(0, cache.size());
+    }
+}
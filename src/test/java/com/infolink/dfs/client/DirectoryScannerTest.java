@@ -0,0 +1,94 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+class DirectoryScannerTest {
+    @TempDir
+    Path root;
+
+    private DirectoryScanner scanner;
+
+    @AfterEach
+    void tearDown() {
+        if (scanner != null) {
+            scanner.preDestroy();
+        }
+    }
+
+    private DirectoryScanner scanner(int parallelism, List<String> includes, List<String> excludes, String symlinks) {
+        DirectoryScanner scanner = new DirectoryScanner();
+        ReflectionTestUtils.setField(scanner, "parallelism", parallelism);
+        ReflectionTestUtils.setField(scanner, "includes", includes);
+        ReflectionTestUtils.setField(scanner, "excludes", excludes);
+        ReflectionTestUtils.setField(scanner, "minSize", DataSize.ofBytes(1));
+        ReflectionTestUtils.setField(scanner, "maxSize", DataSize.ofBytes(0));
+        ReflectionTestUtils.setField(scanner, "symlinks", symlinks);
+        scanner.postConstruct();
+        return scanner;
+    }
+
+    private Set<String> scan(DirectoryScanner scanner) throws IOException {
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        scanner.scan(root, (path, attrs) -> found.add(root.relativize(path).toString().replace('\\', '/')), () -> false);
+        return found;
+    }
+
+    private void createTree() throws IOException {
+        Files.createDirectories(root.resolve("src/deep/er"));
+        Files.createDirectories(root.resolve("build"));
+        Files.writeString(root.resolve("top.txt"), "top");
+        Files.writeString(root.resolve("notes.log"), "log");
+        Files.writeString(root.resolve("empty.txt"), "");
+        Files.writeString(root.resolve("src/a.txt"), "a");
+        Files.writeString(root.resolve("src/deep/er/b.txt"), "b");
+        Files.writeString(root.resolve("build/out.txt"), "out");
+    }
+
+    @Test
+    void appliesGlobsSizeLimitsAndPrunesExcludedDirectories() throws IOException {
+        createTree();
+        for (int parallelism : new int[] {1, 4}) {
+            scanner = scanner(parallelism, List.of("*.txt"), List.of("build"), "skip");
+            // empty.txt is below min-size, notes.log is not included, build/ is not entered
+            assertEquals(Set.of("top.txt", "src/a.txt", "src/deep/er/b.txt"), scan(scanner), "parallelism " + parallelism);
+            scanner.preDestroy();
+        }
+    }
+
+    @Test
+    void symlinkPolicyDecidesWhetherLinksAreFollowed(@TempDir Path outside) throws IOException {
+        createTree();
+        Files.writeString(outside.resolve("linked.txt"), "linked");
+        Files.createSymbolicLink(root.resolve("linkdir"), outside);
+        Files.createSymbolicLink(root.resolve("link.txt"), root.resolve("top.txt"));
+        Files.createSymbolicLink(root.resolve("src/loop"), root); // Followed, this would never end
+
+        scanner = scanner(1, List.of(), List.of(), "skip");
+        Set<String> skipped = scan(scanner);
+        scanner = scanner(4, List.of(), List.of(), "follow-files");
+        Set<String> files = scan(scanner);
+        scanner.preDestroy();
+        scanner = scanner(4, List.of(), List.of(), "follow");
+        Set<String> followed = scan(scanner);
+
+        assertFalse(skipped.stream().anyMatch(p -> p.startsWith("link")));
+        assertEquals(Set.of("link.txt"), files.stream().filter(p -> p.startsWith("link")).collect(Collectors.toSet()));
+        assertEquals(Set.of("link.txt", "linkdir/linked.txt"),
+                followed.stream().filter(p -> p.startsWith("link")).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,672 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.infolink.dfs.shared.DfsFile;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+class FileClientServiceTest {
+    private static final StubDfsServer stub = startStub();
+
+    @TempDir
+    static Path downloadDir;
+
+    @Autowired
+    private FileClientService fileClientService;
+    @Autowired
+    private ContentHasher contentHasher;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private UploadJobManager uploadJobManager;
+    @Autowired
+    private DownloadProxy downloadProxy;
+    @Autowired
+    private NodeRegistry nodeRegistry;
+    @Autowired
+    private DirectoryListingCache listingCache;
+    @Autowired
+    private CompressionPolicy compressionPolicy;
+    @Autowired
+    private FileClientController controller;
+
+    private static StubDfsServer startStub() {
+        try {
+            return new StubDfsServer();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void dfsProperties(DynamicPropertyRegistry registry) {
+        registry.add("metanode.url", stub::getUrl);
+        registry.add("download.dir", () -> downloadDir.toString());
+        registry.add("journal.dir", () -> downloadDir.resolve("journal").toString());
+        registry.add("sync.index.dir", () -> downloadDir.resolve("sync").toString());
+        registry.add("upload.batch.size", () -> "4");
+        registry.add("upload.block.threshold", () -> "1MB");
+        registry.add("upload.block.size", () -> "256KB");
+        registry.add("download.range.size", () -> "256KB");
+        registry.add("compression.enabled", () -> "true");
+        registry.add("metanode.retry.initial-backoff", () -> "10ms");
+        registry.add("cache.block.enabled", () -> "true");
+        registry.add("cache.block.dir", () -> downloadDir.resolve("blocks").toString());
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void directoryUploadResolvesUrlsInBatchesAndSkipsExistingFiles(@TempDir Path source) throws IOException {
+        Files.createDirectories(source.resolve("nested"));
+        for (int i = 0; i < 6; i++) {
+            Files.writeString(source.resolve("file" + i + ".txt"), "content " + i);
+        }
+        Files.writeString(source.resolve("nested/existing.txt"), "already stored");
+        stub.addExistingFile(source.resolve("nested/existing.txt").toFile().getAbsolutePath());
+
+        int batchCalls = stub.getRequestCount("/metadata/upload-url/batch");
+        int singleCalls = stub.getRequestCount("/metadata/upload-url");
+        UploadSummary summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/backup");
+
+        assertEquals(7, summary.getTotalFiles());
+        assertEquals(6, summary.getUploaded());
+        assertEquals(1, summary.getSkipped());
+        assertEquals(0, summary.getFailed());
+        assertEquals(2, stub.getRequestCount("/metadata/upload-url/batch") - batchCalls);
+        assertEquals(singleCalls, stub.getRequestCount("/metadata/upload-url"));
+    }
+
+    @Test
+    void rerunOfDirectoryUploadSkipsJournaledFilesWithoutMetanodeCalls(@TempDir Path source) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(source.resolve("nightly" + i + ".csv"), "row " + i);
+        }
+        fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/nightly");
+        Files.writeString(source.resolve("nightly3.csv"), "row 3");
+
+        int batchCalls = stub.getRequestCount("/metadata/upload-url/batch");
+        UploadSummary summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/nightly");
+
+        assertEquals(1, summary.getUploaded());
+        assertEquals(3, summary.getSkipped());
+        assertEquals(1, stub.getRequestCount("/metadata/upload-url/batch") - batchCalls);
+    }
+
+    @Test
+    void fileModifiedAfterTheWalkIsUploadedAgainByTheNextRun(@TempDir Path source) throws IOException {
+        Path growing = Files.writeString(source.resolve("growing.csv"), "row 1\n");
+        stub.setUploadUrlListener(filename -> { // Between the walk and the transfer
+            if (filename.equals("growing.csv")) {
+                try {
+                    Files.writeString(growing, "row 2\n", StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        try {
+            assertEquals(1, fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/growing").getUploaded());
+        } finally {
+            stub.setUploadUrlListener(null);
+        }
+
+        // The journal holds the size the walk saw, so the appended row is not taken as uploaded
+        UploadSummary rerun = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/growing");
+        assertEquals(1, rerun.getUploaded());
+        assertArrayEquals("row 1\nrow 2\n".getBytes(), stub.getUploadedContent("growing.csv"));
+    }
+
+    @Test
+    void directoryUploadJobRunsInBackgroundAndReportsProgress(@TempDir Path source) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(source.resolve("job" + i + ".txt"), "job content " + i);
+        }
+
+        UploadJob job = uploadJobManager.submit("tester", source.toString(), "/jobs");
+        job.getFuture().get(30, TimeUnit.SECONDS);
+
+        assertEquals(UploadJob.Status.COMPLETED, job.getStatus());
+        assertEquals(5, job.getFilesFound());
+        assertEquals(5, job.getUploaded());
+        assertEquals(job.getBytesFound(), job.getBytesDone());
+        assertTrue(job.isScanComplete());
+        assertSame(job, uploadJobManager.getJob(job.getId()));
+        assertFalse(uploadJobManager.cancel(job.getId())); // Already finished
+    }
+
+    @Test
+    void syncUploadsOnlyTheDeltaAndReportsDeletions(@TempDir Path source) throws IOException {
+        Path changed = Files.writeString(source.resolve("changed.txt"), "v1");
+        Path touched = Files.writeString(source.resolve("touched.txt"), "same content");
+        Path removed = Files.writeString(source.resolve("removed.txt"), "going away");
+        UploadSummary first = fileClientService.syncDirectory("tester", source.toString(), "/sync", true);
+        assertEquals(3, first.getUploaded());
+
+        Files.writeString(changed, "version 2");
+        Files.setLastModifiedTime(touched, FileTime.fromMillis(touched.toFile().lastModified() + 60_000));
+        Files.delete(removed);
+        Files.writeString(source.resolve("added.txt"), "new");
+        UploadSummary second = fileClientService.syncDirectory("tester", source.toString(), "/sync", true);
+
+        assertEquals(2, second.getUploaded());
+        assertEquals(1, second.getSkipped());
+        assertEquals(List.of("removed.txt"), second.getDeleted());
+
+        int batchCalls = stub.getRequestCount("/metadata/upload-url/batch");
+        UploadSummary third = fileClientService.syncDirectory("tester", source.toString(), "/sync", true);
+        assertEquals(3, third.getSkipped());
+        assertTrue(third.getDeleted().isEmpty());
+        assertEquals(batchCalls, stub.getRequestCount("/metadata/upload-url/batch")); // Nothing to resolve
+    }
+
+    @Test
+    void syncDoesNotRepackTouchedFilesWithUnchangedContent(@TempDir Path source) throws IOException {
+        Path touched = Files.writeString(source.resolve("touched.txt"), "packed content");
+        Path changed = Files.writeString(source.resolve("changed.txt"), "v1");
+        ReflectionTestUtils.setField(fileClientService, "packEnabled", true);
+        try {
+            assertEquals(2, fileClientService.syncDirectory("tester", source.toString(), "/packed-sync", false).getUploaded());
+
+            Files.setLastModifiedTime(touched, FileTime.fromMillis(touched.toFile().lastModified() + 60_000));
+            Files.writeString(changed, "v2");
+            int batchCommits = stub.getRequestCount("/metadata/file/commit/batch");
+            UploadSummary second = fileClientService.syncDirectory("tester", source.toString(), "/packed-sync", false);
+
+            assertEquals(1, second.getUploaded());
+            assertEquals(1, second.getSkipped());
+            assertEquals(1, stub.getRequestCount("/metadata/file/commit/batch") - batchCommits);
+            assertFalse(stub.getCommittedFiles().stream()
+                    .filter(f -> f.getPath().equals("/packed-sync/touched.txt")).skip(1).findAny().isPresent());
+        } finally {
+            ReflectionTestUtils.setField(fileClientService, "packEnabled", false);
+        }
+    }
+
+    @Test
+    void directoryUploadSkipsContentTheMetanodeAlreadyHas(@TempDir Path source) throws IOException {
+        Files.writeString(source.resolve("new.log"), "fresh content");
+        Files.writeString(source.resolve("copy.log"), "repeated backup content");
+        stub.addExistingHash(contentHasher.hash(source.resolve("copy.log")));
+
+        UploadSummary summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/backup");
+
+        assertEquals(1, summary.getUploaded());
+        assertEquals(1, summary.getSkipped());
+        assertFalse(stub.getUploadedFilenames().contains("copy.log"));
+    }
+
+    @Test
+    void batchUploadPipelinesResolvedBatchesAndReportsEveryFile() throws IOException {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            files.add(new MockMultipartFile("files", "part" + i + ".txt", "text/plain", ("part content " + i).getBytes()));
+        }
+        files.add(new MockMultipartFile("files", "known.txt", "text/plain", "already in DFS".getBytes()));
+        stub.addExistingHash(contentHasher.hash(new ByteArrayInputStream("already in DFS".getBytes())));
+
+        int batchCalls = stub.getRequestCount("/metadata/upload-url/batch");
+        UploadSummary summary = fileClientService.uploadFilesToServer("tester", files, "/browser");
+
+        assertEquals(7, summary.getResults().size());
+        assertEquals(6, summary.getUploaded());
+        assertEquals(1, summary.getSkipped());
+        assertEquals(2, stub.getRequestCount("/metadata/upload-url/batch") - batchCalls);
+        assertArrayEquals("part content 5".getBytes(), stub.getUploadedContent("part5.txt"));
+    }
+
+    @Test
+    void smallFilesArePackedIntoOneContainerAndExtractedByRange(@TempDir Path source) throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(source.resolve("small" + i + ".txt"), "small file number " + i);
+        }
+        Files.write(source.resolve("big.bin"), new byte[100 * 1024]); // Above the threshold, uploaded on its own
+
+        int commitCalls = stub.getRequestCount("/metadata/file/commit");
+        int batchCommits = stub.getRequestCount("/metadata/file/commit/batch");
+        ReflectionTestUtils.setField(fileClientService, "packEnabled", true);
+        UploadSummary summary;
+        try {
+            summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/packed");
+        } finally {
+            ReflectionTestUtils.setField(fileClientService, "packEnabled", false);
+        }
+
+        assertEquals(6, summary.getUploaded());
+        assertEquals(1, stub.getRequestCount("/metadata/file/commit/batch") - batchCommits);
+        assertEquals(commitCalls, stub.getRequestCount("/metadata/file/commit"));
+        assertTrue(stub.getUploadedFilenames().contains("big.bin"));
+        assertFalse(stub.getUploadedFilenames().contains("small3.txt"));
+
+        DfsFile packed = stub.getCommittedFiles().stream()
+                .filter(f -> f.getPath().equals("/packed/small3.txt")).findFirst().orElseThrow();
+        assertEquals("/.dfspack", stub.getUploadTargetDir(packed.getContainer())); // Not listed in /packed
+        byte[] container = stub.getUploadedContent(packed.getContainer());
+        assertEquals(5, PackContainer.readIndex(Files.write(source.resolve("container"), container)).size());
+
+        stub.putFile(packed.getContainer(), container);
+        long written = fileClientService.downloadFileFromServer("small3.txt", packed, TransferProgressListener.NONE);
+        assertEquals(packed.getSize(), written);
+        assertEquals("small file number 3", Files.readString(downloadDir.resolve("small3.txt")));
+    }
+
+    @Test
+    void containerWhoseFilesFailToCommitIsFlaggedAsOrphaned(@TempDir Path source) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(source.resolve("orphan" + i + ".txt"), "orphaned file " + i);
+        }
+        double orphaned = meterRegistry.counter("dfs.client.pack.orphaned").count();
+        stub.failNextCommits(1);
+        ReflectionTestUtils.setField(fileClientService, "packEnabled", true);
+        UploadSummary summary;
+        try {
+            summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/orphans");
+        } finally {
+            ReflectionTestUtils.setField(fileClientService, "packEnabled", false);
+        }
+
+        assertEquals(3, summary.getFailed());
+        assertEquals(orphaned + 1, meterRegistry.counter("dfs.client.pack.orphaned").count());
+    }
+
+    @Test
+    void downloadEndpointExtractsPackedFilesFromTheirContainer(@TempDir Path source) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Files.writeString(source.resolve("endpoint-packed" + i + ".txt"), "packed for the endpoint " + i);
+        }
+        ReflectionTestUtils.setField(fileClientService, "packEnabled", true);
+        try {
+            fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/packed-endpoint");
+        } finally {
+            ReflectionTestUtils.setField(fileClientService, "packEnabled", false);
+        }
+        DfsFile packed = stub.getCommittedFiles().stream()
+                .filter(f -> f.getPath().equals("/packed-endpoint/endpoint-packed1.txt")).findFirst().orElseThrow();
+        stub.putFile(packed.getContainer(), stub.getUploadedContent(packed.getContainer()));
+        stub.addListedFile(packed);
+
+        ResponseEntity<String> response = controller.downloadFile("endpoint-packed1.txt", "/packed-endpoint");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(0, stub.getRequestCount("/dfs/getfile/endpoint-packed1.txt")); // Not stored under its name
+        assertEquals("packed for the endpoint 1", Files.readString(downloadDir.resolve("endpoint-packed1.txt")));
+    }
+
+    @Test
+    void largeFileIsUploadedAsHashedBlocks(@TempDir Path source) throws IOException {
+        byte[] content = new byte[1024 * 1024 + 100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        Path file = source.resolve("video.bin");
+        Files.write(file, content);
+
+        String result = fileClientService.uploadFileSystemResourceToServer("tester", file.toFile(), "/media");
+
+        assertEquals("File metadata committed", result);
+        DfsFile committed = stub.getCommittedFiles().stream()
+                .filter(f -> f.getPath().equals("/media/video.bin")).findFirst().orElseThrow();
+        assertEquals(content.length, committed.getSize());
+        assertEquals(contentHasher.hash(file), committed.getHash());
+        assertEquals(5, committed.getBlockHashes().size());
+        assertTrue(stub.getUploadedBlocks().containsAll(committed.getBlockHashes()));
+    }
+
+    private double uploadedBytes() {
+        return meterRegistry.get("dfs.client.transfer.bytes").tag("direction", "upload")
+                .tag("node", TransferMetrics.node(stub.getUrl())).counter().count();
+    }
+
+    @Test
+    void textUploadIsCompressedOnceTheNodeAdvertisesGzip(@TempDir Path source) throws IOException {
+        String line = "timestamp=2024-01-01T00:00:00Z level=INFO message=request handled\n";
+        Path first = Files.writeString(source.resolve("first.log"), line.repeat(2000));
+        Path second = Files.writeString(source.resolve("second.log"), line.repeat(3000));
+        stub.setAcceptedEncoding("gzip");
+        try {
+            fileClientService.uploadFileSystemResourceToServer("tester", first.toFile(), "/logs");
+            double sent = uploadedBytes();
+            fileClientService.uploadFileSystemResourceToServer("tester", second.toFile(), "/logs");
+            assertTrue(uploadedBytes() - sent < Files.size(second) / 10); // Compressed bytes are counted
+        } finally {
+            stub.setAcceptedEncoding(null);
+        }
+
+        // Nothing is known about the node before its first response
+        assertEquals("identity", stub.getUploadEncoding("first.log"));
+        assertEquals("gzip", stub.getUploadEncoding("second.log"));
+        assertArrayEquals(Files.readAllBytes(second), stub.getUploadedContent("second.log"));
+    }
+
+    @Test
+    void streamedMultipartUploadIsResentUncompressedWhenTheNodeAnswers415() {
+        byte[] content = "level=INFO message=request handled\n".repeat(3000).getBytes();
+        MockMultipartFile file = new MockMultipartFile("file", "rejected.log", "text/plain", content);
+        ReflectionTestUtils.setField(compressionPolicy, "assumeSupported", true);
+        stub.setRejectEncodedUploads(true);
+        try {
+            fileClientService.uploadFileToServer("tester", file, "/logs415");
+        } finally {
+            stub.setRejectEncodedUploads(false);
+            ReflectionTestUtils.setField(compressionPolicy, "assumeSupported", false);
+            ((Map<?, ?>) ReflectionTestUtils.getField(compressionPolicy, "nodeSupport")).clear();
+        }
+
+        assertEquals("identity", stub.getUploadEncoding("rejected.log"));
+        assertArrayEquals(content, stub.getUploadedContent("rejected.log"));
+    }
+
+    @Test
+    void streamedUploadForwardsTheBodyOnceAndReportsProgress() {
+        byte[] content = new byte[300_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 17);
+        }
+        AtomicLong progress = new AtomicLong();
+        stub.setDeadNodeUrl("http://localhost:1/dfs/upload"); // Refused before a byte is read, so failover is safe
+        try {
+            fileClientService.uploadStreamToServer("tester", "streamed.bin", new ByteArrayInputStream(content),
+                    content.length, "/streamed", (transferred, total) -> progress.set(transferred));
+        } finally {
+            stub.setDeadNodeUrl(null);
+        }
+
+        assertArrayEquals(content, stub.getUploadedContent("streamed.bin"));
+        assertEquals(content.length, progress.get());
+    }
+
+    @Test
+    void partlySentStreamFailsWithTheNodeErrorAndRecordsNothingForTheUntriedNode() {
+        byte[] content = "read by the first node".getBytes();
+        NodeRegistry.NodeStats node = nodeRegistry.stats(stub.getUrl());
+        double errorRate = node.getErrorRate();
+        int uploads = stub.getRequestCount("/dfs/upload");
+        stub.setDeadNodeUrl(stub.getUrl() + "/dfs/unavailable"); // Reads the body, then answers 503
+        RuntimeException e;
+        try {
+            e = assertThrows(RuntimeException.class, () -> fileClientService.uploadStreamToServer("tester",
+                    "partly-sent.bin", new ByteArrayInputStream(content), content.length, "/streamed", null));
+        } finally {
+            stub.setDeadNodeUrl(null);
+        }
+
+        assertTrue(e.getMessage().contains("503"), e.getMessage());
+        assertEquals(uploads, stub.getRequestCount("/dfs/upload"));
+        assertEquals(0.2 + 0.8 * errorRate, node.getErrorRate(), 1e-9); // One failure, no success
+    }
+
+    @Test
+    void uploadFailsOverToCandidateWhenSelectedNodeIsDown(@TempDir Path source) throws IOException {
+        Path file = Files.writeString(source.resolve("failover.txt"), "needs another node");
+        stub.setDeadNodeUrl("http://localhost:1/dfs/upload");
+        try {
+            fileClientService.uploadFileSystemResourceToServer("tester", file.toFile(), "/failover");
+        } finally {
+            stub.setDeadNodeUrl(null);
+        }
+
+        assertTrue(stub.getUploadedFilenames().contains("failover.txt"));
+        assertTrue(meterRegistry.get("dfs.client.node.error.rate").tag("node", "localhost:1").gauge().value() > 0);
+    }
+
+    @Test
+    void streamedMultipartUploadFailsOverWhenTheFirstNodeAnswers503() {
+        MockMultipartFile file = new MockMultipartFile("file", "browser-failover.txt", "text/plain",
+                "sent twice".getBytes());
+        int rejected = stub.getRequestCount("/dfs/unavailable");
+        stub.setDeadNodeUrl(stub.getUrl() + "/dfs/unavailable");
+        try {
+            fileClientService.uploadFileToServer("tester", file, "/failover");
+        } finally {
+            stub.setDeadNodeUrl(null);
+        }
+
+        assertEquals(1, stub.getRequestCount("/dfs/unavailable") - rejected);
+        assertArrayEquals("sent twice".getBytes(), stub.getUploadedContent("browser-failover.txt"));
+    }
+
+    @Test
+    void failedCommitOfBlockUploadIsNotHeldAgainstTheNode(@TempDir Path source) throws IOException {
+        byte[] content = new byte[1024 * 1024 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 239);
+        }
+        Path file = source.resolve("commit-fails.bin");
+        Files.write(file, content);
+        NodeRegistry.NodeStats node = nodeRegistry.stats(stub.getUrl());
+        double errorRate = node.getErrorRate();
+        int blocks = stub.getUploadedBlocks().size();
+        stub.failNextCommits(1);
+
+        assertThrows(RuntimeException.class,
+                () -> fileClientService.uploadFileSystemResourceToServer("tester", file.toFile(), "/media"));
+
+        assertEquals(5, stub.getUploadedBlocks().size() - blocks); // Sent once, not again to another candidate
+        assertTrue(node.getErrorRate() <= errorRate);
+        assertFalse(NodeRegistry.isNodeFailure(new ResourceAccessException("I/O error on POST request",
+                new SourceReadException("Could not read " + file, new NoSuchFileException(file.toString())))));
+    }
+
+    @Test
+    void transientListingFailureIsRetried() {
+        int listCalls = stub.getRequestCount("/metadata/file/list");
+        stub.failNextListings(2);
+
+        fileClientService.getFileListFromServer("/retried");
+
+        assertEquals(3, stub.getRequestCount("/metadata/file/list") - listCalls);
+        assertEquals(2.0, meterRegistry.get("dfs.client.retries").tag("operation", "list").counter().count());
+    }
+
+    @Test
+    void fileListPagesAreParsedFromTheStreamedListing() {
+        for (int i = 0; i < 25; i++) {
+            stub.addListedFile(new DfsFile("h" + i, "owner", "listed-" + i + ".txt", "/paged/listed-" + i + ".txt", i, false, null, null));
+        }
+
+        FileListPage page = fileClientService.getFileListPage("/paged", 1, 10);
+        assertEquals(10, page.getFiles().size());
+        assertEquals("listed-10.txt", page.getFiles().get(0).getName());
+        assertTrue(page.isHasNext());
+        assertTrue(page.isHasPrevious());
+
+        FileListPage last = fileClientService.getFileListPage("/paged", 2, 10);
+        assertEquals(5, last.getFiles().size());
+        assertFalse(last.isHasNext());
+        assertEquals(1, stub.getRequestCount("/metadata/file/list/page")); // Fallback is remembered
+    }
+
+    @Test
+    void singleFileLookupStreamsTheListingWithoutCachingIt() {
+        stub.addListedFile(new DfsFile("looked-up", "owner", "lookup.txt", "/lookup/lookup.txt", 7, false, null, null));
+
+        DfsFile found = fileClientService.findFileInListing("/lookup", "lookup.txt");
+        assertEquals("looked-up", found.getHash());
+        assertNull(fileClientService.findFileInListing("/lookup", "missing.txt"));
+        assertNull(listingCache.get("/lookup", new FileClientService.RequestDirectory("/lookup").getOwner()));
+    }
+
+    @Test
+    void downloadStreamsFileIntoDownloadDir() throws IOException {
+        byte[] content = new byte[3 * TransferUtils.TRANSFER_CHUNK + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        stub.putFile("large.bin", content);
+        String node = TransferMetrics.node(stub.getUrl());
+        double bytesBefore = downloadedBytes(node);
+
+        long written = fileClientService.downloadFileFromServer("large.bin");
+
+        assertEquals(content.length, written);
+        assertEquals(content.length, downloadedBytes(node) - bytesBefore);
+        assertTrue(meterRegistry.get("dfs.client.requests").tags("operation", "download", "node", node).timer().count() > 0);
+        assertArrayEquals(content, Files.readAllBytes(new File(downloadDir.toFile(), "large.bin").toPath()));
+    }
+
+    private double downloadedBytes(String node) {
+        Counter counter = meterRegistry.find("dfs.client.transfer.bytes").tags("direction", "download", "node", node).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    @Test
+    void parallelDownloadFetchesRangesAndVerifiesHash() throws IOException {
+        byte[] content = new byte[1024 * 1024 + 5];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        stub.putFile("ranged.bin", content);
+        Path expected = Files.write(downloadDir.resolve("expected.bin"), content);
+        DfsFile metadata = new DfsFile(contentHasher.hash(expected), "tester", "ranged.bin", "/ranged.bin",
+                content.length, false, null, null);
+
+        int getCalls = stub.getRequestCount("/dfs/getfile/ranged.bin");
+        long written = fileClientService.downloadFileInParallel("ranged.bin", metadata, TransferProgressListener.NONE);
+
+        assertEquals(content.length, written);
+        assertEquals(5, stub.getRequestCount("/dfs/getfile/ranged.bin") - getCalls);
+        assertArrayEquals(content, Files.readAllBytes(downloadDir.resolve("ranged.bin")));
+    }
+
+    @Test
+    void downloadEndpointLooksUpTheFileAndServesRepeatsFromTheBlockCache() throws IOException {
+        byte[] content = "cached through the endpoint".getBytes();
+        stub.putFile("endpoint.txt", content);
+        Path expected = Files.write(downloadDir.resolve("endpoint.expected"), content);
+        stub.addListedFile(new DfsFile(contentHasher.hash(expected), "tester", "endpoint.txt", "/endpoint/endpoint.txt",
+                content.length, false, null, null));
+
+        int getCalls = stub.getRequestCount("/dfs/getfile/endpoint.txt");
+        assertEquals(HttpStatus.OK, controller.downloadFile("endpoint.txt", "/endpoint").getStatusCode());
+        Files.delete(downloadDir.resolve("endpoint.txt"));
+        assertEquals(HttpStatus.OK, controller.downloadFile("endpoint.txt", "/endpoint").getStatusCode());
+
+        assertEquals(1, stub.getRequestCount("/dfs/getfile/endpoint.txt") - getCalls);
+        assertArrayEquals(content, Files.readAllBytes(downloadDir.resolve("endpoint.txt")));
+    }
+
+    @Test
+    void repeatedDownloadIsServedFromBlockCacheAndCorruptBlocksAreRefetched() throws IOException {
+        int blockSize = 256 * 1024;
+        byte[] content = new byte[2 * blockSize + 99];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 7 + i / 1000); // Not periodic in the block size, so no two blocks match
+        }
+        stub.putFile("reference.bin", content);
+        List<String> blockHashes = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += blockSize) {
+            Path block = Files.write(downloadDir.resolve("block.tmp"),
+                    Arrays.copyOfRange(content, offset, Math.min(content.length, offset + blockSize)));
+            blockHashes.add(contentHasher.hash(block));
+        }
+        Path whole = Files.write(downloadDir.resolve("reference.expected"), content);
+        DfsFile metadata = new DfsFile(contentHasher.hash(whole), "tester", "reference.bin", "/reference.bin",
+                content.length, false, null, blockHashes);
+
+        int getCalls = stub.getRequestCount("/dfs/getfile/reference.bin");
+        fileClientService.downloadFileInParallel("reference.bin", metadata, TransferProgressListener.NONE);
+        assertEquals(3, stub.getRequestCount("/dfs/getfile/reference.bin") - getCalls);
+
+        Files.delete(downloadDir.resolve("reference.bin"));
+        fileClientService.downloadFileInParallel("reference.bin", metadata, TransferProgressListener.NONE);
+        assertEquals(3, stub.getRequestCount("/dfs/getfile/reference.bin") - getCalls); // All blocks were cached
+        assertArrayEquals(content, Files.readAllBytes(downloadDir.resolve("reference.bin")));
+
+        Path cached = downloadDir.resolve("blocks").resolve(blockHashes.get(1));
+        byte[] damaged = Files.readAllBytes(cached);
+        damaged[10] ^= 1;
+        Files.write(cached, damaged);
+        fileClientService.downloadFileInParallel("reference.bin", metadata, TransferProgressListener.NONE);
+        assertEquals(4, stub.getRequestCount("/dfs/getfile/reference.bin") - getCalls); // Only the damaged block
+        assertArrayEquals(content, Files.readAllBytes(downloadDir.resolve("reference.bin")));
+        assertTrue(meterRegistry.get("dfs.client.block.cache.corrupt").functionCounter().count() >= 1);
+    }
+
+    @Test
+    void proxyStreamsRangesAndAnswersConditionalRequestsFromTheHash() throws IOException {
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 13);
+        }
+        stub.putFile("proxied.bin", content);
+        DfsFile metadata = new DfsFile("abc123", "tester", "proxied.bin", "/proxied.bin", content.length, false, null, null);
+
+        ResponseEntity<StreamingResponseBody> full = downloadProxy.proxy("proxied.bin", metadata, new HttpHeaders());
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+        assertEquals("\"abc123\"", full.getHeaders().getETag());
+        assertArrayEquals(content, body(full));
+
+        HttpHeaders rangeHeaders = new HttpHeaders();
+        rangeHeaders.set(HttpHeaders.RANGE, "bytes=1000-1999");
+        rangeHeaders.set(HttpHeaders.IF_RANGE, "\"abc123\"");
+        ResponseEntity<StreamingResponseBody> partial = downloadProxy.proxy("proxied.bin", metadata, rangeHeaders);
+        assertEquals(HttpStatus.PARTIAL_CONTENT, partial.getStatusCode());
+        assertEquals("bytes 1000-1999/" + content.length, partial.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), body(partial));
+
+        rangeHeaders.set(HttpHeaders.IF_RANGE, "\"stale\""); // Changed since the client's partial copy
+        ResponseEntity<StreamingResponseBody> replaced = downloadProxy.proxy("proxied.bin", metadata, rangeHeaders);
+        assertEquals(HttpStatus.OK, replaced.getStatusCode());
+        assertEquals(content.length, body(replaced).length);
+
+        int getCalls = stub.getRequestCount("/dfs/getfile/proxied.bin");
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.set(HttpHeaders.IF_NONE_MATCH, "W/\"other\", \"abc123\"");
+        ResponseEntity<StreamingResponseBody> notModified = downloadProxy.proxy("proxied.bin", metadata, conditional);
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(getCalls, stub.getRequestCount("/dfs/getfile/proxied.bin"));
+
+        assertEquals(HttpStatus.NOT_FOUND, downloadProxy.proxy("missing.bin", null, new HttpHeaders()).getStatusCode());
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+}
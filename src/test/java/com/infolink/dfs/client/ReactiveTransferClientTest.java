@@ -0,0 +1,99 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Runs FileClientService with transfer.backend=webclient against the stub server.
+ */
+@SpringBootTest(properties = "transfer.backend=webclient")
+class ReactiveTransferClientTest {
+    private static final StubDfsServer stub = startStub();
+
+    @TempDir
+    static Path downloadDir;
+
+    @Autowired
+    private FileClientService fileClientService;
+    @Autowired
+    private ReactiveTransferClient reactiveTransferClient;
+
+    private static StubDfsServer startStub() {
+        try {
+            return new StubDfsServer();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void dfsProperties(DynamicPropertyRegistry registry) {
+        registry.add("metanode.url", stub::getUrl);
+        registry.add("download.dir", () -> downloadDir.toString());
+        registry.add("journal.dir", () -> downloadDir.resolve("journal").toString());
+        registry.add("upload.batch.size", () -> "4");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    void directoryUploadStreamsFilesWithoutBlockingUploadThreads(@TempDir Path source) throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Files.write(source.resolve("reactive" + i + ".bin"), new byte[1000 + i]);
+        }
+
+        UploadSummary summary = fileClientService.uploadFilesFromDirectory("tester", source.toString(), "/reactive");
+
+        assertEquals(20, summary.getUploaded());
+        assertEquals(0, summary.getFailed());
+        assertTrue(stub.getUploadedFilenames().contains("reactive7.bin"));
+    }
+
+    @Test
+    void downloadWritesBodyThroughAsynchronousFileChannel() throws IOException {
+        byte[] content = new byte[3 * 1024 * 1024 + 11];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 7);
+        }
+        stub.putFile("reactive.bin", content);
+
+        long written = fileClientService.downloadFileFromServer("reactive.bin");
+
+        assertEquals(content.length, written);
+        assertArrayEquals(content, Files.readAllBytes(downloadDir.resolve("reactive.bin")));
+    }
+
+    @Test
+    void downloadResumesFromExistingPartFile() throws IOException {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 13);
+        }
+        stub.putFile("resumed.bin", content);
+        Path part = downloadDir.resolve("resumed.bin.part");
+        Files.write(part, Arrays.copyOf(content, 40_000));
+
+        long size = reactiveTransferClient.downloadBlocking(stub.getUrl() + "/dfs/getfile/resumed.bin", part, 40_000,
+                TransferProgressListener.NONE);
+
+        assertEquals(content.length, size);
+        assertArrayEquals(content, Files.readAllBytes(part));
+    }
+}
@@ -0,0 +1,320 @@
+package com.infolink.dfs.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infolink.dfs.client.FileClientService.RequestUpload;
+import com.infolink.dfs.client.FileClientService.RequestUploadBatch;
+import com.infolink.dfs.client.FileClientService.UploadBatchResponse;
+import com.infolink.dfs.client.FileClientService.UploadResponse;
+import com.infolink.dfs.shared.DfsFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the metanode and a single data node, built on the JDK
+ * HttpServer. It implements just enough of the DFS endpoints for client tests and
+ * counts the requests it receives per path.
+ */
+public class StubDfsServer implements AutoCloseable {
+    private static final Pattern FILENAME = Pattern.compile("filename=\"([^\"]*)\"");
+    private static final Pattern PART_ENCODING = Pattern.compile("Content-Encoding: (\\S+)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final HttpServer server;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Set<String> existingFiles = ConcurrentHashMap.newKeySet();
+    private final Set<String> existingHashes = ConcurrentHashMap.newKeySet();
+    private final Map<String, byte[]> storedFiles = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> uploadedFilenames = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> uploadEncodings = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> uploadedContent = new ConcurrentHashMap<>();
+    private final Map<String, String> uploadTargetDirs = new ConcurrentHashMap<>();
+    private volatile String acceptedEncoding;
+    private volatile boolean rejectEncodedUploads;
+    private volatile Consumer<String> uploadUrlListener = name -> {};
+    private volatile String deadNodeUrl;
+    private final AtomicInteger listFailures = new AtomicInteger();
+    private final AtomicInteger commitFailures = new AtomicInteger();
+    private final ConcurrentLinkedQueue<String> uploadedBlocks = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<DfsFile> committedFiles = new ConcurrentLinkedQueue<>();
+    private final List<DfsFile> listedFiles = new ArrayList<>();
+
+    public StubDfsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/metadata/upload-url", this::handleUploadUrl);
+        server.createContext("/dfs/upload", this::handleUpload);
+        server.createContext("/dfs/unavailable", this::handleUnavailable);
+        server.createContext("/dfs/getfile/", this::handleGetFile);
+        server.createContext("/metadata/file/commit", this::handleCommit);
+        server.createContext("/metadata/file/commit/batch", this::handleCommitBatch);
+        server.createContext("/metadata/file/list", this::handleFileList);
+        server.start();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /** Marks a filename (as sent to /metadata/upload-url) as already stored. */
+    public void addExistingFile(String filename) {
+        existingFiles.add(filename);
+    }
+
+    /** Marks a content hash as already stored, regardless of filename. */
+    public void addExistingHash(String hash) {
+        existingHashes.add(hash);
+    }
+
+    /** Makes content available to GET /dfs/getfile/{name}. */
+    public void putFile(String name, byte[] content) {
+        storedFiles.put(name, content);
+    }
+
+    /** Adds an entry to the listing returned by /metadata/file/list. */
+    public synchronized void addListedFile(DfsFile file) {
+        listedFiles.add(file);
+    }
+
+    public int getRequestCount(String path) {
+        AtomicInteger count = requestCounts.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Makes the next listing requests fail with 503 Service Unavailable. */
+    public void failNextListings(int count) {
+        listFailures.set(count);
+    }
+
+    /** Makes the next metadata commits fail with 503 Service Unavailable. */
+    public void failNextCommits(int count) {
+        commitFailures.set(count);
+    }
+
+    /** Makes upload-url responses select a node that is down, with this stub as the candidate. */
+    public void setDeadNodeUrl(String url) {
+        this.deadNodeUrl = url;
+    }
+
+    /** Advertises a request coding in the Accept-Encoding header of upload responses. */
+    public void setAcceptedEncoding(String encoding) {
+        this.acceptedEncoding = encoding;
+    }
+
+    /** Runs with the file name of every upload-url request, before it is answered. */
+    public void setUploadUrlListener(Consumer<String> listener) {
+        this.uploadUrlListener = listener != null ? listener : name -> {};
+    }
+
+    /** Makes uploads whose file part carries a Content-Encoding fail with 415 Unsupported Media Type. */
+    public void setRejectEncodedUploads(boolean reject) {
+        this.rejectEncodedUploads = reject;
+    }
+
+    /** Content-Encoding of the last file part received for a filename, "identity" when none. */
+    public String getUploadEncoding(String filename) {
+        return uploadEncodings.get(filename);
+    }
+
+    /** Decoded content of the last file part received for a filename. */
+    public byte[] getUploadedContent(String filename) {
+        return uploadedContent.get(filename);
+    }
+
+    /** Target directory of the last upload-url request for a file name. */
+    public String getUploadTargetDir(String name) {
+        return uploadTargetDirs.get(name);
+    }
+
+    public List<String> getUploadedFilenames() {
+        return new ArrayList<>(uploadedFilenames);
+    }
+
+    /** Block hashes received on {nodeUrl}/block, in arrival order. */
+    public List<String> getUploadedBlocks() {
+        return new ArrayList<>(uploadedBlocks);
+    }
+
+    public List<DfsFile> getCommittedFiles() {
+        return new ArrayList<>(committedFiles);
+    }
+
+    private void count(HttpExchange exchange) {
+        requestCounts.computeIfAbsent(exchange.getRequestURI().getPath(), p -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void handleUploadUrl(HttpExchange exchange) throws IOException {
+        count(exchange);
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/metadata/upload-url/batch")) {
+            RequestUploadBatch batch = mapper.readValue(exchange.getRequestBody(), RequestUploadBatch.class);
+            List<UploadResponse> responses = new ArrayList<>();
+            for (RequestUpload request : batch.getRequests()) {
+                responses.add(toUploadResponse(request));
+            }
+            sendJson(exchange, new UploadBatchResponse(responses));
+        } else {
+            RequestUpload request = mapper.readValue(exchange.getRequestBody(), RequestUpload.class);
+            sendJson(exchange, toUploadResponse(request));
+        }
+    }
+
+    private UploadResponse toUploadResponse(RequestUpload request) {
+        uploadTargetDirs.put(new File(request.getFilename()).getName(), request.getTargetDir());
+        uploadUrlListener.accept(new File(request.getFilename()).getName());
+        boolean exists = existingFiles.contains(request.getFilename())
+                || (request.getHash() != null && existingHashes.contains(request.getHash()));
+        String nodeUrl = getUrl() + "/dfs/upload";
+        if (!exists && deadNodeUrl != null) {
+            return new UploadResponse(false, deadNodeUrl, List.of(deadNodeUrl, nodeUrl));
+        }
+        return new UploadResponse(exists, exists ? "" : nodeUrl);
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        count(exchange);
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+        if (rejectEncodedUploads && PART_ENCODING.matcher(body).find()) {
+            send(exchange, 415, "text/plain", "Unsupported Media Type".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        Matcher matcher = FILENAME.matcher(body);
+        if (matcher.find()) {
+            if (exchange.getRequestURI().getPath().endsWith("/block")) {
+                uploadedBlocks.add(matcher.group(1));
+            } else {
+                uploadedFilenames.add(matcher.group(1));
+                recordFilePart(exchange, body, matcher);
+            }
+        }
+        if (acceptedEncoding != null) {
+            exchange.getResponseHeaders().set("Accept-Encoding", acceptedEncoding);
+        }
+        send(exchange, 200, "text/plain", "File uploaded successfully".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** A data node that reads the upload and then answers 503, at {url}/dfs/unavailable. */
+    private void handleUnavailable(HttpExchange exchange) throws IOException {
+        count(exchange);
+        exchange.getRequestBody().readAllBytes();
+        send(exchange, 503, "text/plain", "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void recordFilePart(HttpExchange exchange, String body, Matcher filename) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String boundary = "\r\n--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+        int headersEnd = body.indexOf("\r\n\r\n", filename.end());
+        Matcher encoding = PART_ENCODING.matcher(body.substring(filename.end(), headersEnd));
+        String coding = encoding.find() ? encoding.group(1) : "identity";
+        byte[] part = body.substring(headersEnd + 4, body.indexOf(boundary, headersEnd)).getBytes(StandardCharsets.ISO_8859_1);
+        if (coding.equals("gzip")) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(part))) {
+                part = in.readAllBytes();
+            }
+        }
+        uploadEncodings.put(filename.group(1), coding);
+        uploadedContent.put(filename.group(1), part);
+    }
+
+    private void handleCommit(HttpExchange exchange) throws IOException {
+        count(exchange);
+        if (commitFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            send(exchange, 503, "text/plain", "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        committedFiles.add(mapper.readValue(exchange.getRequestBody(), DfsFile.class));
+        send(exchange, 200, "text/plain", "File metadata committed".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleCommitBatch(HttpExchange exchange) throws IOException {
+        count(exchange);
+        if (commitFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            send(exchange, 503, "text/plain", "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        committedFiles.addAll(Arrays.asList(mapper.readValue(exchange.getRequestBody(), DfsFile[].class)));
+        send(exchange, 200, "text/plain", "File metadata committed".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleFileList(HttpExchange exchange) throws IOException {
+        count(exchange);
+        exchange.getRequestBody().readAllBytes();
+        if (listFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            send(exchange, 503, "text/plain", "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (!exchange.getRequestURI().getPath().equals("/metadata/file/list")) {
+            send(exchange, 404, "text/plain", "Not Found".getBytes(StandardCharsets.UTF_8)); // Paged listings are not supported
+            return;
+        }
+        List<DfsFile> files;
+        synchronized (this) {
+            files = new ArrayList<>(listedFiles);
+        }
+        sendJson(exchange, files);
+    }
+
+    private void handleGetFile(HttpExchange exchange) throws IOException {
+        count(exchange);
+        String name = exchange.getRequestURI().getPath().substring("/dfs/getfile/".length());
+        byte[] content = storedFiles.get(name);
+        if (content == null) {
+            send(exchange, 404, "text/plain", new byte[0]);
+            return;
+        }
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        Matcher range = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+        if (range.matches()) {
+            int start = Integer.parseInt(range.group(1));
+            int end = range.group(2).isEmpty() ? content.length - 1 : Math.min(Integer.parseInt(range.group(2)), content.length - 1);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            send(exchange, 206, "application/octet-stream", Arrays.copyOfRange(content, start, end + 1));
+            return;
+        }
+        send(exchange, 200, "application/octet-stream", content);
+    }
+
+    private void sendJson(HttpExchange exchange, Object body) throws IOException {
+        send(exchange, 200, "application/json", mapper.writeValueAsBytes(body));
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        try (InputStream ignored = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
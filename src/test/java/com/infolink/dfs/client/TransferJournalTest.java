@@ -0,0 +1,77 @@
+package com.infolink.dfs.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TransferJournalTest {
+    @TempDir
+    Path dir;
+
+    private TransferJournal open(int maxEntries) throws IOException {
+        TransferJournal journal = new TransferJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(journal, "maxFileRecordAge", Duration.ofDays(30));
+        ReflectionTestUtils.setField(journal, "maxFileRecords", maxEntries);
+        journal.postConstruct();
+        return journal;
+    }
+
+    @Test
+    void newerVersionOfAFileReplacesItsRecord() throws IOException {
+        File file = new File(dir.toFile(), "a.txt");
+        String v1 = TransferJournal.uploadKey(file, 10, 1000, "/docs");
+        String v2 = TransferJournal.uploadKey(file, 12, 2000, "/docs");
+        String elsewhere = TransferJournal.uploadKey(file, 12, 2000, "/backup");
+
+        TransferJournal journal = open(100);
+        journal.markFileCompleted(v1);
+        journal.markFileCompleted(v2);
+        journal.markFileCompleted(elsewhere);
+        assertFalse(journal.isFileCompleted(v1));
+        assertTrue(journal.isFileCompleted(v2));
+        assertEquals(2, journal.getFileRecordCount());
+        journal.preDestroy();
+
+        TransferJournal reloaded = open(100); // Replayed and compacted
+        assertFalse(reloaded.isFileCompleted(v1));
+        assertTrue(reloaded.isFileCompleted(v2));
+        assertTrue(reloaded.isFileCompleted(elsewhere));
+        assertEquals(2, Files.readAllLines(dir.resolve("transfers.journal"), StandardCharsets.UTF_8).size());
+        reloaded.preDestroy();
+    }
+
+    @Test
+    void dropsExpiredAndOldestFileRecordsAtCompaction() throws IOException {
+        long now = System.currentTimeMillis();
+        String expired = TransferJournal.uploadKey(new File("/data/expired"), 1, 1, "/docs");
+        String old = TransferJournal.uploadKey(new File("/data/old"), 1, 1, "/docs");
+        String recent = TransferJournal.uploadKey(new File("/data/recent"), 1, 1, "/docs");
+        String latest = TransferJournal.uploadKey(new File("/data/latest"), 1, 1, "/docs");
+        Files.write(dir.resolve("transfers.journal"), List.of(
+                "F\t" + expired + "\t" + (now - Duration.ofDays(31).toMillis()),
+                "F\t" + old + "\t" + (now - 3000),
+                "F\t" + recent + "\t" + (now - 2000),
+                "F\t" + latest + "\t" + (now - 1000)), StandardCharsets.UTF_8);
+
+        TransferJournal journal = open(2);
+        assertFalse(journal.isFileCompleted(expired));
+        assertFalse(journal.isFileCompleted(old));
+        assertTrue(journal.isFileCompleted(recent));
+        assertTrue(journal.isFileCompleted(latest));
+        journal.preDestroy();
+    }
+}